@@ -0,0 +1,82 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.Application;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.search.ScreeningQuery;
+import com.soundcu.ofac.search.SyntheticList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Starts the service without its web layer for a benchmark trial, on the bundled list only, and
+ * builds reproducible queries against it.
+ */
+final class BenchmarkContext {
+  private static final long SEED = 20230307;
+
+  private BenchmarkContext() {
+  }
+
+  static ConfigurableApplicationContext start(String... properties) {
+    List<String> args = new ArrayList<>(List.of("--entries.host=${entries.local}", "--rescreen.enabled=false",
+        "--logging.level.root=WARN"));
+    for (String property : properties)
+      args.add("--" + property);
+    return new SpringApplicationBuilder(Application.class)
+        .web(WebApplicationType.NONE)
+        .run(args.toArray(new String[0]));
+  }
+
+  /**
+   * Queries of one shape: {@code name} is a listed name with a few edits or a name not on the
+   * list, {@code id} a listed ID number or an unknown one, {@code name+dob} a listed name with
+   * its date of birth.
+   *
+   * @param entries entries
+   * @param shape   shape
+   * @param count   count
+   * @return ScreeningQuery[]
+   * @throws JSONException never
+   */
+  static ScreeningQuery[] queries(List<Entry> entries, String shape, int count) throws JSONException {
+    Random random = new Random(SEED);
+    List<Entry> withIds = new ArrayList<>();
+    List<Entry> withBirthDates = new ArrayList<>();
+    for (Entry entry : entries) {
+      if (entry.getIds() != null && !entry.getIds().isEmpty() && entry.getIds().get(0).getNumber() != null)
+        withIds.add(entry);
+      if (entry.getDates_of_birth() != null && !entry.getDates_of_birth().isEmpty() && entry.getName() != null)
+        withBirthDates.add(entry);
+    }
+
+    ScreeningQuery[] queries = new ScreeningQuery[count];
+    for (int i = 0; i < count; i++) {
+      JSONObject entity = new JSONObject();
+      switch (shape) {
+        case "name":
+          entity.put(ScreeningQuery.NAME, SyntheticList.query(random, entries));
+          break;
+        case "id":
+          entity.put(ScreeningQuery.ID, random.nextInt(5) == 0
+              ? "X" + (100000000 + random.nextInt(900000000))
+              : withIds.get(random.nextInt(withIds.size())).getIds().get(0).getNumber());
+          break;
+        case "name+dob":
+          Entry entry = withBirthDates.get(random.nextInt(withBirthDates.size()));
+          entity.put(ScreeningQuery.NAME, entry.getName());
+          entity.put(ScreeningQuery.BIRTH_DATE, entry.getDates_of_birth().get(0));
+          break;
+        default:
+          throw new IllegalArgumentException("Unknown query shape " + shape);
+      }
+      queries[i] = ScreeningQuery.of(entity);
+    }
+    return queries;
+  }
+}
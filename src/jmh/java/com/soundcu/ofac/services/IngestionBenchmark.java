@@ -0,0 +1,56 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.search.ListSnapshot;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Maps and indexes the bundled list document from memory, the way a reload does once the
+ * download has finished.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class IngestionBenchmark {
+  private ConfigurableApplicationContext context;
+  private EntryBuilder entryBuilder;
+  private byte[] document;
+
+  @Setup(Level.Trial)
+  public void setUp() throws IOException {
+    context = BenchmarkContext.start();
+    entryBuilder = context.getBean(EntryBuilder.class);
+    try (InputStream in = EntryBuilder.class.getResourceAsStream(context.getEnvironment().getProperty("entries.local"))) {
+      document = in.readAllBytes();
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public ListSnapshot readEntriesFromSource() throws IOException {
+    entryBuilder.readEntriesFromSource(new ByteArrayInputStream(document));
+    return entryBuilder.getSnapshot();
+  }
+}
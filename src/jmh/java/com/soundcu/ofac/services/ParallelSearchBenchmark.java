@@ -0,0 +1,82 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Low threshold name searches with the parallel scan on and off: the latency of one search
+ * alone, and the throughput of as many concurrent searches as there are cores.
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class ParallelSearchBenchmark {
+  private static final int QUERIES = 256;
+
+  @Param({"60", "70"})
+  public int minimumScore;
+
+  @Param({"true", "false"})
+  public boolean parallel;
+
+  private ConfigurableApplicationContext context;
+  private EntryService entryService;
+  private ListSnapshot snapshot;
+  private ScreeningQuery[] queries;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws JSONException {
+    context = BenchmarkContext.start("search.parallel.enabled=" + parallel, "search.parallel.min-candidates=0");
+    entryService = context.getBean(EntryService.class);
+    snapshot = context.getBean(EntryBuilder.class).getSnapshot();
+    queries = BenchmarkContext.queries(snapshot.getEntries(), "name", QUERIES);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @Threads(1)
+  public List<Match> latency() {
+    return entryService.search(snapshot, minimumScore, nextQuery(), null, null, 0);
+  }
+
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @Threads(Threads.MAX)
+  public List<Match> throughput() {
+    return entryService.search(snapshot, minimumScore, nextQuery(), null, null, 0);
+  }
+
+  private ScreeningQuery nextQuery() {
+    // racy under many threads, which only changes the order queries are picked in
+    int query = (next + 1) % queries.length;
+    next = query;
+    return queries[query];
+  }
+}
@@ -0,0 +1,83 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.Response;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The work around a search in a request: validating the payload against the request schema and
+ * serializing the response as the controller does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class RequestBenchmark {
+  @Param({"1", "10"})
+  public int matches;
+
+  private ConfigurableApplicationContext context;
+  private JSONValidator validator;
+  private ResponseRenderer renderer;
+  private String payload;
+  private Response response;
+
+  @Setup(Level.Trial)
+  public void setUp() throws JSONException {
+    context = BenchmarkContext.start();
+    validator = context.getBean(JSONValidator.class);
+    renderer = context.getBean(ResponseRenderer.class);
+    ListSnapshot snapshot = context.getBean(EntryBuilder.class).getSnapshot();
+
+    Entry entry = snapshot.getEntries().get(0);
+    JSONObject entity = new JSONObject()
+        .put(ScreeningQuery.NAME, entry.getName())
+        .put(ScreeningQuery.BIRTH_DATE, "1970-01-01")
+        .put(ScreeningQuery.ID, "A1234567")
+        .put(ScreeningQuery.ADDRESS, "1 Main Street")
+        .put(ScreeningQuery.COUNTRY, "US");
+    payload = entity.toString();
+
+    Requestor requestor = new Requestor();
+    requestor.setUser_id("benchmark");
+    requestor.setUser_id_type("user");
+    response = context.getBean(ScreeningService.class)
+        .screen(snapshot, ScreeningQuery.of(entity), 50, null, matches, requestor);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public boolean validate() {
+    return validator.isValid(payload);
+  }
+
+  @Benchmark
+  public byte[] serializeResponse() {
+    return renderer.render(response);
+  }
+}
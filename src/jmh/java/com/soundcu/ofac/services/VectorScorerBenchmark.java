@@ -0,0 +1,72 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.search.BitParallelScorer;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.NameScorer;
+import com.soundcu.ofac.search.ScreeningQuery;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * The {@code bitparallel} searches of {@link ScorerBenchmark} with {@code search.vector} on, the
+ * only benchmark whose forks add the incubating Vector API. Needs a build with
+ * {@code -P benchmark,vector}; without it the setup fails rather than measuring the scalar scorer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g", "--add-modules", "jdk.incubator.vector"})
+public class VectorScorerBenchmark {
+  private static final int QUERIES = 256;
+
+  @Param({"80", "90", "95"})
+  public int minimumScore;
+
+  @Param({"name", "name+dob"})
+  public String shape;
+
+  private ConfigurableApplicationContext context;
+  private EntryService entryService;
+  private ListSnapshot snapshot;
+  private ScreeningQuery[] queries;
+  private int next;
+
+  @Setup(Level.Trial)
+  public void setUp() throws JSONException {
+    if (NameScorer.of("bitparallel", true) == BitParallelScorer.INSTANCE)
+      throw new IllegalStateException("VectorScorer is not built, run with -P benchmark,vector");
+    context = BenchmarkContext.start("search.scorer=bitparallel", "search.vector=true");
+    entryService = context.getBean(EntryService.class);
+    snapshot = context.getBean(EntryBuilder.class).getSnapshot();
+    queries = BenchmarkContext.queries(snapshot.getEntries(), shape, QUERIES);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    context.close();
+  }
+
+  @Benchmark
+  public List<Match> search() {
+    next = (next + 1) % queries.length;
+    return entryService.search(snapshot, minimumScore, queries[next], null, null, 0);
+  }
+}
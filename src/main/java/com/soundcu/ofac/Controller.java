@@ -1,27 +1,32 @@
 package com.soundcu.ofac;
 
 import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
 
-import java.net.URLDecoder;
-import java.nio.charset.StandardCharsets;
+import java.io.IOException;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
 
-import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
-import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.exceptions.BadRequestException;
 import com.soundcu.ofac.model.Requestor;
 import com.soundcu.ofac.model.Response;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import com.soundcu.ofac.services.BatchScreener;
 import com.soundcu.ofac.services.EntryBuilder;
-import com.soundcu.ofac.services.EntryService;
-import com.soundcu.ofac.services.JSONValidator;
 import com.soundcu.ofac.services.OfacLogger;
+import com.soundcu.ofac.services.RequestDecoder;
+import com.soundcu.ofac.services.ResponseRenderer;
+import com.soundcu.ofac.services.ScreeningService;
 
 @RestController
 public class Controller 
@@ -32,10 +37,16 @@ public class Controller
 	private EntryBuilder entryBuilder;
 	
 	@Autowired
-	private EntryService entryService;
+	private ScreeningService screeningService;
 	
 	@Autowired
-	private JSONValidator validator;
+	private BatchScreener batchScreener;
+	
+	@Autowired
+	private RequestDecoder decoder;
+	
+	@Autowired
+	private ResponseRenderer renderer;
 	
 	@Autowired
 	private OfacLogger logger;
@@ -43,34 +54,32 @@ public class Controller
 	@PostMapping(value = "/verify/ofac", 
 			consumes = {APPLICATION_FORM_URLENCODED_VALUE, APPLICATION_JSON_VALUE}, 
 			produces = {APPLICATION_JSON_VALUE})
-	ResponseEntity<Object> ofac(@RequestHeader("Content-Type") String contentType,
+	ResponseEntity<byte[]> ofac(@RequestHeader("Content-Type") String contentType,
 			@RequestHeader(required = false, value = "minimum_matching_score") Integer minimumScore,
+			@RequestHeader(required = false, value = "max_results") Integer maxResults,
+			@RequestHeader(required = false, value = "sources") String sources,
 			@RequestHeader String user_id, 
 			@RequestHeader String user_id_type, 
 			@RequestBody String entity,
 			HttpServletRequest request)
 	{
 		logger.logRequest(request);
-		if (contentType.equalsIgnoreCase("application/x-www-form-urlencoded"))
-			entity = parseForm(entity);
-		
-		validator.isValid(entity);
+		ScreeningQuery query = decoder.decode(contentType, entity);
 		if (minimumScore == null)
 			minimumScore = threshold;
 		
-		JSONObject entityObj = new JSONObject(entity);
-		List<Entry> entries = entryService.search(minimumScore, entityObj);
-		Response response = buildResponse(entries, entityObj, user_id, user_id_type);
-		ResponseEntity<Object> responseEntity = new ResponseEntity<Object>(response, HttpStatus.OK);
-		logger.logResponse(responseEntity, request.getRequestURI());
-		return responseEntity;
+		ListSnapshot snapshot = entryBuilder.getSnapshot();
+		Response response = screeningService.screen(snapshot, query, minimumScore, null, screeningService.sources(snapshot, sources), maxResults(maxResults), buildRequestor(user_id, user_id_type));
+		return respond(response, request);
 	}
 	
 	@PostMapping(value = "/verify/ofac/{type}", 
 			consumes = {APPLICATION_FORM_URLENCODED_VALUE, APPLICATION_JSON_VALUE}, 
 			produces = {APPLICATION_JSON_VALUE})
-	ResponseEntity<Object> ofacType(@RequestHeader("Content-Type") String contentType,
+	ResponseEntity<byte[]> ofacType(@RequestHeader("Content-Type") String contentType,
 			@RequestHeader(required = false, value = "minimum_matching_score") Integer minimumScore,
+			@RequestHeader(required = false, value = "max_results") Integer maxResults,
+			@RequestHeader(required = false, value = "sources") String sources,
 			@RequestHeader String user_id, 
 			@RequestHeader String user_id_type, 
 			@PathVariable("type") String type,
@@ -78,43 +87,75 @@ public class Controller
 			HttpServletRequest request)
 	{
 		logger.logRequest(request);
-		if (contentType.equalsIgnoreCase("application/x-www-form-urlencoded"))
-			entity = parseForm(entity);
-		
-		validator.isValid(entity);
+		ScreeningQuery query = decoder.decode(contentType, entity);
 		if (minimumScore == null)
 			minimumScore = threshold;
 		
-		JSONObject entityObj = new JSONObject(entity);
-		List<Entry> entries = entryService.filterByType(minimumScore, entityObj, type);
-		Response response = buildResponse(entries, entityObj, user_id, user_id_type);
-		ResponseEntity<Object> responseEntity = new ResponseEntity<Object>(response, HttpStatus.OK);
-		logger.logResponse(responseEntity, request.getRequestURI());
-		return responseEntity;
+		ListSnapshot snapshot = entryBuilder.getSnapshot();
+		Response response = screeningService.screen(snapshot, query, minimumScore, type, screeningService.sources(snapshot, sources), maxResults(maxResults), buildRequestor(user_id, user_id_type));
+		return respond(response, request);
 	}
 	
-	private Response buildResponse(List<Entry> entries, JSONObject entity, String userId, String userType)
+	/**
+	 * Serializes the response once; the client and the audit log get the same bytes.
+	 */
+	private ResponseEntity<byte[]> respond(Response response, HttpServletRequest request)
 	{
-		Response response = new Response(entries, entity.has("name") ? entity.getString("name") : "");
-		Requestor requestor = new Requestor();
-		requestor.setUser_id(userId);
-		requestor.setUser_id_type(userType);
-		response.setSeach_performed_by(requestor);
-		response.setSources_used(entryBuilder.getSourceData());
-		return response;
+		ResponseEntity<byte[]> responseEntity = ResponseEntity.ok()
+				.contentType(APPLICATION_JSON)
+				.body(renderer.render(response));
+		logger.logResponse(responseEntity.getHeaders(), responseEntity.getBody(), request.getRequestURI());
+		return responseEntity;
 	}
 	
-	private String parseForm(String body)
+	/**
+	 * Screens a JSON array or NDJSON stream of entities, each with an optional "id", against one
+	 * list snapshot. Results are streamed back as NDJSON lines in completion order.
+	 */
+	@PostMapping(value = {"/verify/ofac/batch", "/verify/ofac/batch/{type}"}, 
+			consumes = {APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE}, 
+			produces = {APPLICATION_NDJSON_VALUE})
+	ResponseEntity<StreamingResponseBody> ofacBatch(@RequestHeader(required = false, value = "minimum_matching_score") Integer minimumScore,
+			@RequestHeader(required = false, value = "max_results") Integer maxResults,
+			@RequestHeader(required = false, value = "sources") String sources,
+			@RequestHeader String user_id, 
+			@RequestHeader String user_id_type, 
+			@PathVariable(required = false, value = "type") String type,
+			HttpServletRequest request) throws IOException
 	{
-		JSONObject entity = new JSONObject();
-		String[] pairs = body.split("&");
-		for (String pair : pairs)
+		logger.logBulkRequest(request);
+		int limit = maxResults(maxResults);
+		ListSnapshot snapshot = entryBuilder.getSnapshot();
+		List<String> sourceFilter = screeningService.sources(snapshot, sources);
+		BatchScreener.Items items = batchScreener.read(request.getInputStream());
+		int score = minimumScore == null ? threshold : minimumScore;
+		Requestor requestor = buildRequestor(user_id, user_id_type);
+		String path = request.getRequestURI();
+		StreamingResponseBody body = (out) -> 
 		{
-			String[] tokens = pair.split("=");
-			String value = tokens.length > 0 ? URLDecoder.decode(tokens[1], StandardCharsets.UTF_8) : null;
-			entity.put(tokens[0], value);
-		}
-		
-		return entity.toString();
+			int errors = batchScreener.screen(items, snapshot, score, type, sourceFilter, limit, requestor, path, out);
+			logger.logBatchResponse(path, items.getCount(), errors);
+		};
+		return ResponseEntity.ok().contentType(APPLICATION_NDJSON).body(body);
+	}
+	
+	/**
+	 * The optional max_results header: the number of best matches to return, 0 when absent for all of them.
+	 */
+	private static int maxResults(Integer header)
+	{
+		if (header == null)
+			return 0;
+		if (header < 1)
+			throw new BadRequestException(132, "max_results must be at least 1.");
+		return header;
+	}
+	
+	private Requestor buildRequestor(String userId, String userType)
+	{
+		Requestor requestor = new Requestor();
+		requestor.setUser_id(userId);
+		requestor.setUser_id_type(userType);
+		return requestor;
 	}
 }
@@ -0,0 +1,84 @@
+package com.soundcu.ofac;
+
+import static org.springframework.http.MediaType.APPLICATION_JSON;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON;
+import static org.springframework.http.MediaType.APPLICATION_NDJSON_VALUE;
+
+import java.io.IOException;
+import java.net.URI;
+
+import javax.servlet.http.HttpServletRequest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import com.soundcu.ofac.model.JobStatus;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.services.JobService;
+import com.soundcu.ofac.services.OfacLogger;
+import com.soundcu.ofac.services.ResponseRenderer;
+
+/**
+ * Bulk screening of whole files: submit an upload, poll its status, download the hits.
+ */
+@RestController
+public class JobController
+{
+	private static Integer threshold = 90;
+	
+	@Autowired
+	private JobService jobService;
+	
+	@Autowired
+	private OfacLogger logger;
+	
+	@Autowired
+	private ResponseRenderer renderer;
+	
+	@PostMapping(value = "/verify/ofac/jobs", 
+			consumes = {"text/csv", APPLICATION_NDJSON_VALUE}, 
+			produces = {APPLICATION_JSON_VALUE})
+	ResponseEntity<byte[]> submit(@RequestHeader("Content-Type") String contentType,
+			@RequestHeader(required = false, value = "minimum_matching_score") Integer minimumScore,
+			@RequestHeader String user_id, 
+			@RequestHeader String user_id_type, 
+			@RequestParam(required = false, value = "type") String type,
+			HttpServletRequest request) throws IOException
+	{
+		logger.logBulkRequest(request);
+		if (minimumScore == null)
+			minimumScore = threshold;
+		
+		Requestor requestor = new Requestor();
+		requestor.setUser_id(user_id);
+		requestor.setUser_id_type(user_id_type);
+		JobStatus status = jobService.submit(contentType, request.getInputStream(), minimumScore, type, requestor);
+		// the job keeps updating its status, so log the status as it was sent
+		ResponseEntity<byte[]> responseEntity = ResponseEntity.accepted()
+				.location(URI.create(request.getRequestURI() + "/" + status.getId()))
+				.contentType(APPLICATION_JSON)
+				.body(renderer.renderBulk(status));
+		logger.logBulkResponse(responseEntity.getHeaders(), responseEntity.getBody(), request.getRequestURI());
+		return responseEntity;
+	}
+	
+	@GetMapping(value = "/verify/ofac/jobs/{id}", produces = {APPLICATION_JSON_VALUE})
+	ResponseEntity<Object> status(@PathVariable("id") String id)
+	{
+		return ResponseEntity.ok(jobService.getStatus(id));
+	}
+	
+	@GetMapping(value = "/verify/ofac/jobs/{id}/result", produces = {APPLICATION_NDJSON_VALUE})
+	ResponseEntity<Resource> result(@PathVariable("id") String id)
+	{
+		return ResponseEntity.ok()
+				.contentType(APPLICATION_NDJSON)
+				.header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + id + ".ndjson\"")
+				.body(new FileSystemResource(jobService.getResult(id)));
+	}
+}
@@ -0,0 +1,49 @@
+package com.soundcu.ofac.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+
+/**
+ * One line of a batch response: the caller's item id with either the same fields as a
+ * single {@link Response} or the error that item failed with.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_NULL)
+public class BatchResult
+{
+	private final String id;
+	private final Response response;
+	private final ServiceError error;
+
+	public BatchResult(String id, Response response)
+	{
+		this.id = id;
+		this.response = response;
+		this.error = null;
+	}
+
+	public BatchResult(String id, ServiceError error)
+	{
+		this.id = id;
+		this.response = null;
+		this.error = error;
+	}
+
+	public String getId()
+	{
+		return id;
+	}
+
+	@JsonUnwrapped
+	public Response getResponse()
+	{
+		return response;
+	}
+
+	public ServiceError getError()
+	{
+		return error;
+	}
+}
@@ -34,7 +34,6 @@ public class Entry
 	private List<String> places_of_birth;
 	private List<String> programs;
 	private String remarks;
-	private Integer score;
 	private String source;
 	private String source_information_url;
 	private String source_list_url;
@@ -135,11 +134,6 @@ public class Entry
 	{
 		return remarks;
 	}
-	
-	public Integer getScore()
-	{
-		return score;
-	}
 
 	public String getSource()
 	{
@@ -280,11 +274,6 @@ public class Entry
 	{
 		this.remarks = remarks;
 	}
-	
-	public void setScore(Integer score)
-	{
-		this.score = score;
-	}
 
 	public void setSource(String source)
 	{
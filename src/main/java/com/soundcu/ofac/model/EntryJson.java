@@ -0,0 +1,71 @@
+package com.soundcu.ofac.model;
+
+import java.io.UncheckedIOException;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * The JSON of an entry, rendered once as compact JSON and left open: the closing brace is
+ * missing, so the fields of a match can follow the entry's own. Its UTF-8 is encoded up front,
+ * so generators copy the bytes straight into their output buffer when it is written as a raw
+ * value.
+ */
+public final class EntryJson
+{
+	private final SerializedString open;
+	
+	private EntryJson(String open)
+	{
+		this.open = new SerializedString(open);
+		// encoded and kept now rather than by the first response writing it
+		this.open.asUnquotedUTF8();
+	}
+	
+	/**
+	 * Renders the entry with the application's ObjectMapper, so that a match reads the same as
+	 * the entry serialized field by field.
+	 * 
+	 * @param entry        entry
+	 * @param objectMapper the application's ObjectMapper
+	 * @return EntryJson
+	 */
+	public static EntryJson of(Entry entry, ObjectMapper objectMapper)
+	{
+		try
+		{
+			String json = objectMapper.writeValueAsString(entry);
+			return new EntryJson(json.substring(0, json.length() - 1));
+		}
+		catch (JsonProcessingException e)
+		{
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * The open JSON, to be written with {@code JsonGenerator.writeRawValue}.
+	 */
+	public SerializableString getOpen()
+	{
+		return open;
+	}
+	
+	/**
+	 * Whether the entry has no field at all, so the match's fields need no leading comma.
+	 */
+	public boolean hasNoFields()
+	{
+		return open.charLength() == 1;
+	}
+	
+	/**
+	 * Bytes held, roughly, for reporting memory use: the UTF-8 and the string it was encoded from.
+	 */
+	public int size()
+	{
+		return open.asUnquotedUTF8().length + open.charLength();
+	}
+}
@@ -0,0 +1,216 @@
+package com.soundcu.ofac.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * Progress of a bulk screening job. The same document is the job's checkpoint on disk, so a
+ * restarted service resumes from the last row it recorded.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_NULL)
+public class JobStatus
+{
+	public enum State
+	{
+		QUEUED, RUNNING, COMPLETED, FAILED
+	}
+
+	private String id;
+	private State state;
+	private String format;
+	private int minimum_score;
+	private String type;
+	private Requestor search_performed_by;
+	private String list_version;
+	private long rows_total;
+	private long rows_done;
+	private long hits;
+	private long errors;
+	private long result_bytes;
+	private double rows_per_second;
+	private String submitted_at;
+	private String started_at;
+	private String finished_at;
+	private String message;
+
+	public String getId()
+	{
+		return id;
+	}
+
+	public State getState()
+	{
+		return state;
+	}
+
+	public String getFormat()
+	{
+		return format;
+	}
+
+	public int getMinimum_score()
+	{
+		return minimum_score;
+	}
+
+	public String getType()
+	{
+		return type;
+	}
+
+	public Requestor getSearch_performed_by()
+	{
+		return search_performed_by;
+	}
+
+	/**
+	 * Version of the list every row of the job is screened against.
+	 */
+	public String getList_version()
+	{
+		return list_version;
+	}
+
+	public long getRows_total()
+	{
+		return rows_total;
+	}
+
+	public long getRows_done()
+	{
+		return rows_done;
+	}
+
+	public long getHits()
+	{
+		return hits;
+	}
+
+	public long getErrors()
+	{
+		return errors;
+	}
+
+	/**
+	 * Length of the result file at the last checkpoint; anything past it is discarded on resume.
+	 */
+	public long getResult_bytes()
+	{
+		return result_bytes;
+	}
+
+	/**
+	 * Rows screened per second since the job last started or resumed.
+	 */
+	public double getRows_per_second()
+	{
+		return rows_per_second;
+	}
+
+	public String getSubmitted_at()
+	{
+		return submitted_at;
+	}
+
+	public String getStarted_at()
+	{
+		return started_at;
+	}
+
+	public String getFinished_at()
+	{
+		return finished_at;
+	}
+
+	public String getMessage()
+	{
+		return message;
+	}
+
+	public void setId(String id)
+	{
+		this.id = id;
+	}
+
+	public void setState(State state)
+	{
+		this.state = state;
+	}
+
+	public void setFormat(String format)
+	{
+		this.format = format;
+	}
+
+	public void setMinimum_score(int minimum_score)
+	{
+		this.minimum_score = minimum_score;
+	}
+
+	public void setType(String type)
+	{
+		this.type = type;
+	}
+
+	public void setSearch_performed_by(Requestor search_performed_by)
+	{
+		this.search_performed_by = search_performed_by;
+	}
+
+	public void setList_version(String list_version)
+	{
+		this.list_version = list_version;
+	}
+
+	public void setRows_total(long rows_total)
+	{
+		this.rows_total = rows_total;
+	}
+
+	public void setRows_done(long rows_done)
+	{
+		this.rows_done = rows_done;
+	}
+
+	public void setHits(long hits)
+	{
+		this.hits = hits;
+	}
+
+	public void setErrors(long errors)
+	{
+		this.errors = errors;
+	}
+
+	public void setResult_bytes(long result_bytes)
+	{
+		this.result_bytes = result_bytes;
+	}
+
+	public void setRows_per_second(double rows_per_second)
+	{
+		this.rows_per_second = rows_per_second;
+	}
+
+	public void setSubmitted_at(String submitted_at)
+	{
+		this.submitted_at = submitted_at;
+	}
+
+	public void setStarted_at(String started_at)
+	{
+		this.started_at = started_at;
+	}
+
+	public void setFinished_at(String finished_at)
+	{
+		this.finished_at = finished_at;
+	}
+
+	public void setMessage(String message)
+	{
+		this.message = message;
+	}
+}
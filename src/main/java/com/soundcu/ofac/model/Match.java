@@ -0,0 +1,66 @@
+package com.soundcu.ofac.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+import com.fasterxml.jackson.annotation.JsonUnwrapped;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A list entry matched by one search. The entry itself is shared between requests and never
+ * modified; everything specific to the search lives here. The entry is written from its
+ * pre-rendered JSON, see {@link MatchSerializer}.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_EMPTY)
+@JsonSerialize(using = MatchSerializer.class)
+public class Match
+{
+	private final Entry entry;
+	private final EntryJson entryJson;
+	private final Integer score;
+	private final String matched_name;
+	private final List<String> matched_fields;
+	
+	/**
+	 * A match on an entry whose JSON was rendered with the list.
+	 */
+	public Match(Entry entry, EntryJson entryJson, Integer score, String matched_name, List<String> matched_fields)
+	{
+		this.entry = entry;
+		this.entryJson = entryJson;
+		this.score = score;
+		this.matched_name = matched_name;
+		this.matched_fields = matched_fields;
+	}
+
+	@JsonUnwrapped
+	public Entry getEntry()
+	{
+		return entry;
+	}
+
+	@JsonIgnore
+	public EntryJson getEntryJson()
+	{
+		return entryJson;
+	}
+
+	public Integer getScore()
+	{
+		return score;
+	}
+
+	public String getMatched_name()
+	{
+		return matched_name;
+	}
+
+	public List<String> getMatched_fields()
+	{
+		return matched_fields;
+	}
+}
@@ -0,0 +1,70 @@
+package com.soundcu.ofac.model;
+
+import java.io.IOException;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+
+/**
+ * Writes a match as its entry's pre-rendered JSON followed by the fields of the search, with the
+ * same output as serializing the unwrapped entry field by field.
+ */
+public class MatchSerializer extends StdSerializer<Match>
+{
+	private static final long serialVersionUID = 1L;
+	
+	public MatchSerializer()
+	{
+		super(Match.class);
+	}
+	
+	@Override
+	public void serialize(Match match, JsonGenerator gen, SerializerProvider provider) throws IOException
+	{
+		EntryJson entry = match.getEntryJson();
+		gen.writeRawValue(entry.getOpen());
+		
+		// written raw as well: the generator does not know the object is still open
+		StringBuilder fields = new StringBuilder(64);
+		String separator = entry.hasNoFields() ? "" : ",";
+		if (match.getScore() != null)
+		{
+			fields.append(separator).append("\"score\":").append(match.getScore().intValue());
+			separator = ",";
+		}
+		if (match.getMatched_name() != null && !match.getMatched_name().isEmpty())
+		{
+			fields.append(separator).append("\"matched_name\":");
+			quote(fields, match.getMatched_name());
+			separator = ",";
+		}
+		List<String> matched = match.getMatched_fields();
+		if (matched != null && !matched.isEmpty())
+		{
+			fields.append(separator).append("\"matched_fields\":[");
+			for (int i = 0; i < matched.size(); i++)
+			{
+				if (i > 0)
+					fields.append(',');
+				quote(fields, matched.get(i));
+			}
+			fields.append(']');
+		}
+		gen.writeRaw(fields.append('}').toString());
+	}
+	
+	private static void quote(StringBuilder json, String value)
+	{
+		if (value == null)
+		{
+			json.append("null");
+			return;
+		}
+		json.append('"');
+		JsonStringEncoder.getInstance().quoteAsString(value, json);
+		json.append('"');
+	}
+}
@@ -0,0 +1,55 @@
+package com.soundcu.ofac.model;
+
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * A registered subject that matches entries a list reload added or changed.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_NULL)
+public class RescreenHit
+{
+	private final Subject subject;
+	private final List<Match> entries;
+	private final String list_version;
+	private final String previous_list_version;
+	private final String rescreened_at;
+
+	public RescreenHit(Subject subject, List<Match> entries, String list_version, String previous_list_version, String rescreened_at)
+	{
+		this.subject = subject;
+		this.entries = entries;
+		this.list_version = list_version;
+		this.previous_list_version = previous_list_version;
+		this.rescreened_at = rescreened_at;
+	}
+
+	public Subject getSubject()
+	{
+		return subject;
+	}
+
+	public List<Match> getResult()
+	{
+		return entries;
+	}
+
+	public String getList_version()
+	{
+		return list_version;
+	}
+
+	public String getPrevious_list_version()
+	{
+		return previous_list_version;
+	}
+
+	public String getRescreened_at()
+	{
+		return rescreened_at;
+	}
+}
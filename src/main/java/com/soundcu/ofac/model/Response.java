@@ -1,14 +1,9 @@
 package com.soundcu.ofac.model;
 
-import java.text.DateFormat;
-import java.text.SimpleDateFormat;
-import java.time.OffsetDateTime;
-import java.util.ArrayList;
-import java.util.Date;
-import java.util.HashSet;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
-import java.util.Set;
-import java.util.TimeZone;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
@@ -18,15 +13,52 @@ import com.fasterxml.jackson.annotation.JsonInclude.Include;
 @JsonInclude(Include.NON_NULL)
 public class Response
 {
-	private List<Entry> entries;
+	private static final DateTimeFormatter PERFORMED_AT = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+			.withZone(ZoneId.of("America/Los_Angeles"));
+	
+	// the last formatted second, shared by every response built within it
+	private static volatile PerformedAt lastPerformedAt = new PerformedAt(Long.MIN_VALUE, null);
+	
+	private List<Match> entries;
+	private String list_version;
 	private String search_name;
 	private Requestor search_performed_by;
 	private List<SourceMetaData> sources_used;
+	private String search_performed_at;
 	
-	public Response(List<Entry> entries, String search_name)
+	public Response(List<Match> entries, String search_name)
 	{
 		this.entries = entries;
 		this.search_name = search_name;
+		this.search_performed_at = performedAt();
+	}
+	
+	/**
+	 * The current time in Los Angeles followed by the offset of the server's zone, formatted once
+	 * per second.
+	 */
+	private static String performedAt()
+	{
+		Instant now = Instant.now();
+		PerformedAt last = lastPerformedAt;
+		if (last.second == now.getEpochSecond())
+			return last.formatted;
+		
+		String formatted = PERFORMED_AT.format(now) + ZoneId.systemDefault().getRules().getOffset(now).toString();
+		lastPerformedAt = new PerformedAt(now.getEpochSecond(), formatted);
+		return formatted;
+	}
+	
+	private static final class PerformedAt
+	{
+		private final long second;
+		private final String formatted;
+		
+		private PerformedAt(long second, String formatted)
+		{
+			this.second = second;
+			this.formatted = formatted;
+		}
 	}
 	
 	public boolean getConfirmed_match()
@@ -34,22 +66,30 @@ public class Response
 		return !entries.isEmpty();
 	}
 	
-	public List<Entry> getResult()
+	public List<Match> getResult()
 	{
 		return entries;
 	}
 	
+	/**
+	 * Version of the list the search ran against.
+	 */
+	public String getList_version()
+	{
+		return list_version;
+	}
+	
 	public String getSearch_name()
 	{
 		return search_name;
 	}
 	
+	/**
+	 * When the response was built, not when it is serialized.
+	 */
 	public String getSearch_performed_at()
 	{
-		TimeZone zone = TimeZone.getTimeZone("America/Los_Angeles");
-        DateFormat dateFormatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-        dateFormatter.setTimeZone(zone);
-        return dateFormatter.format(new Date()) + OffsetDateTime.now().getOffset().toString();
+		return search_performed_at;
 	}
 	
 	public Requestor getSearch_performed_by()
@@ -62,20 +102,21 @@ public class Response
 		return sources_used;
 	}
 	
+	public void setList_version(String list_version)
+	{
+		this.list_version = list_version;
+	}
+	
 	public void setSeach_performed_by(Requestor requestor)
 	{
 		this.search_performed_by = requestor;
 	}
 
+	/**
+	 * Sets the metadata of the sources the matches came from, see {@code ListSnapshot.sourcesUsed}.
+	 */
 	public void setSources_used(List<SourceMetaData> sources_used)
 	{
-		Set<String> sources = new HashSet<String>();
-		this.sources_used = new ArrayList<SourceMetaData>();
-		entries.forEach( (entry) -> { if (entry.getScore() != null) sources.add(entry.getSource()); });
-		sources_used.forEach( (data) -> 
-		{ 
-			if (data.getSource() != null && sources.contains(data.getSource()))
-				this.sources_used.add(data);
-		});
+		this.sources_used = sources_used;
 	}
 }
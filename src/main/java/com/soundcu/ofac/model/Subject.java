@@ -0,0 +1,100 @@
+package com.soundcu.ofac.model;
+
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonInclude.Include;
+
+/**
+ * A screened subject kept for rescreening: the request fields as sent and the settings they
+ * were screened with.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonInclude(Include.NON_NULL)
+public class Subject
+{
+	private Map<String, String> fields;
+	private int minimum_score;
+	private String type;
+	private List<String> sources;
+	private Requestor search_performed_by;
+	private String screened_at;
+
+	public Map<String, String> getFields()
+	{
+		return fields;
+	}
+
+	public int getMinimum_score()
+	{
+		return minimum_score;
+	}
+
+	public String getType()
+	{
+		return type;
+	}
+
+	/**
+	 * Sources the subject was screened against, or null for all of them.
+	 */
+	public List<String> getSources()
+	{
+		return sources;
+	}
+
+	public Requestor getSearch_performed_by()
+	{
+		return search_performed_by;
+	}
+
+	/**
+	 * When the subject was first screened.
+	 */
+	public String getScreened_at()
+	{
+		return screened_at;
+	}
+
+	/**
+	 * Subjects with the same fields screened with the same settings are kept once.
+	 */
+	@JsonIgnore
+	public String getKey()
+	{
+		return fields + "\0" + minimum_score + "\0" + type + "\0" + sources;
+	}
+
+	public void setFields(Map<String, String> fields)
+	{
+		this.fields = fields;
+	}
+
+	public void setMinimum_score(int minimum_score)
+	{
+		this.minimum_score = minimum_score;
+	}
+
+	public void setType(String type)
+	{
+		this.type = type;
+	}
+
+	public void setSources(List<String> sources)
+	{
+		this.sources = sources;
+	}
+
+	public void setSearch_performed_by(Requestor search_performed_by)
+	{
+		this.search_performed_by = search_performed_by;
+	}
+
+	public void setScreened_at(String screened_at)
+	{
+		this.screened_at = screened_at;
+	}
+}
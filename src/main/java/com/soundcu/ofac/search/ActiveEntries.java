@@ -0,0 +1,94 @@
+package com.soundcu.ofac.search;
+
+import com.soundcu.ofac.model.Entry;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * The days each entry of a list is active, parsed once from its start and end dates, and the set
+ * of entries active today. The set is only recomputed when the calendar day changes.
+ */
+public final class ActiveEntries {
+    private final long[] activeFrom;
+    private final long[] activeUntil;
+    private volatile Day today;
+
+    private ActiveEntries(long[] activeFrom, long[] activeUntil) {
+        this.activeFrom = activeFrom;
+        this.activeUntil = activeUntil;
+    }
+
+    /**
+     * Parses the activity window of every entry into epoch days. An entry is active from its
+     * start date and stops being active on its end date. As before, an unreadable end date never
+     * ends the entry and an unreadable start date keeps it inactive.
+     *
+     * @param names names
+     * @return ActiveEntries
+     */
+    public static ActiveEntries build(NameIndex names) {
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
+        List<IndexedEntry> entries = names.getEntries();
+        long[] activeFrom = new long[entries.size()];
+        long[] activeUntil = new long[entries.size()];
+        for (int position = 0; position < entries.size(); position++) {
+            Entry entry = entries.get(position).getEntry();
+            activeFrom[position] = entry.getStart_date() == null ? Long.MIN_VALUE : epochDay(format, entry.getStart_date(), Long.MAX_VALUE);
+            activeUntil[position] = entry.getEnd_date() == null ? Long.MAX_VALUE : epochDay(format, entry.getEnd_date(), Long.MAX_VALUE);
+        }
+        return new ActiveEntries(activeFrom, activeUntil);
+    }
+
+    private static long epochDay(SimpleDateFormat format, String date, long unreadable) {
+        try {
+            return format.parse(date).toInstant().atZone(ZoneId.systemDefault()).toLocalDate().toEpochDay();
+        } catch (ParseException e) {
+            return unreadable;
+        }
+    }
+
+    /**
+     * Positions of the entries active today. The returned set is shared and must not be modified.
+     *
+     * @return BitSet
+     */
+    public BitSet today() {
+        long day = LocalDate.now().toEpochDay();
+        Day current = today;
+        if (current == null || current.day != day) {
+            current = new Day(day, on(day));
+            today = current;
+        }
+        return current.active;
+    }
+
+    /**
+     * Positions of the entries active on the given epoch day.
+     *
+     * @param day day
+     * @return BitSet
+     */
+    public BitSet on(long day) {
+        BitSet active = new BitSet(activeFrom.length);
+        for (int position = 0; position < activeFrom.length; position++) {
+            if (activeFrom[position] <= day && day < activeUntil[position])
+                active.set(position);
+        }
+        return active;
+    }
+
+    private static final class Day {
+        private final long day;
+        private final BitSet active;
+
+        private Day(long day, BitSet active) {
+            this.day = day;
+            this.active = active;
+        }
+    }
+}
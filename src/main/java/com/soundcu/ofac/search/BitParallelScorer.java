@@ -0,0 +1,21 @@
+package com.soundcu.ofac.search;
+
+/**
+ * Computes the same ratio as {@link LcsScorer} with the bit-parallel common subsequence of
+ * Allison and Dix, as refined by Hyyrö: the query's masks are built once, then each name costs
+ * a few word operations per character instead of a row of the dynamic program. Queries longer
+ * than 64 characters do not fit a word and are scored by {@link LcsScorer}.
+ */
+public final class BitParallelScorer implements NameScorer {
+    public static final BitParallelScorer INSTANCE = new BitParallelScorer();
+
+    private BitParallelScorer() {
+    }
+
+    @Override
+    public int score(NameForm name, NameForm query) {
+        if (query.chars().length > BitPattern.MAX_LENGTH)
+            return LcsScorer.INSTANCE.score(name, query);
+        return LcsScorer.ratio(query.pattern().lcs(name.chars()), name.chars().length + query.chars().length);
+    }
+}
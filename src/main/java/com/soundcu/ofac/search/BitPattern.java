@@ -0,0 +1,109 @@
+package com.soundcu.ofac.search;
+
+import java.util.Arrays;
+
+/**
+ * A query of at most 64 characters as match masks for the bit-parallel common subsequence: bit j
+ * of a character's mask is set where the query holds that character. Latin-1 characters index
+ * the masks directly; the few other characters a query holds come after them, and every other
+ * character shares the empty mask in the last slot.
+ */
+final class BitPattern {
+    static final int MAX_LENGTH = Long.SIZE;
+
+    private static final int DIRECT = 256;
+
+    private final long[] masks;
+    private final char[] others;
+    private final long used;
+
+    private BitPattern(long[] masks, char[] others, int length) {
+        this.masks = masks;
+        this.others = others;
+        this.used = length == MAX_LENGTH ? -1L : (1L << length) - 1;
+    }
+
+    /**
+     * Builds the masks of a query of at most {@link #MAX_LENGTH} characters.
+     *
+     * @param query query
+     * @return BitPattern
+     */
+    static BitPattern of(char[] query) {
+        char[] others = new char[0];
+        for (char c : query) {
+            if (c >= DIRECT && indexOf(others, c) < 0) {
+                others = Arrays.copyOf(others, others.length + 1);
+                others[others.length - 1] = c;
+            }
+        }
+
+        long[] masks = new long[DIRECT + others.length + 1];
+        for (int j = 0; j < query.length; j++) {
+            char c = query[j];
+            masks[c < DIRECT ? c : DIRECT + indexOf(others, c)] |= 1L << j;
+        }
+        return new BitPattern(masks, others, query.length);
+    }
+
+    private static int indexOf(char[] chars, char c) {
+        for (int i = 0; i < chars.length; i++) {
+            if (chars[i] == c)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Slot of a character's mask in {@link #masks()}.
+     *
+     * @param c c
+     * @return int
+     */
+    int index(char c) {
+        if (c < DIRECT)
+            return c;
+        int other = indexOf(others, c);
+        return other < 0 ? empty() : DIRECT + other;
+    }
+
+    /**
+     * Slot of the mask that matches nothing, which leaves the state of a lane unchanged.
+     *
+     * @return int
+     */
+    int empty() {
+        return masks.length - 1;
+    }
+
+    long[] masks() {
+        return masks;
+    }
+
+    /**
+     * Longest common subsequence of the query and a text of any length: each text character
+     * advances the state V one step, {@code U = V & M[c]; V = (V + U) | (V - U)}, and every
+     * zero bit of the final V within the query is one character of the subsequence.
+     *
+     * @param text text
+     * @return int
+     */
+    int lcs(char[] text) {
+        long v = -1L;
+        for (char c : text) {
+            long u = v & masks[index(c)];
+            v = (v + u) | (v - u);
+        }
+        return count(v);
+    }
+
+    /**
+     * Length of the subsequence a final state stands for.
+     *
+     * @param v v
+     * @return int
+     */
+    int count(long v) {
+        return Long.bitCount(~v & used);
+    }
+}
@@ -0,0 +1,46 @@
+package com.soundcu.ofac.search;
+
+import java.util.Arrays;
+
+/**
+ * Scores of a query against candidate variants, computed together by a scorer that works on
+ * many names at once. Candidates whose length bound could not reach the minimum score were not
+ * scored and read as 0.
+ */
+public final class CandidateScores {
+    private final int[] variants;
+    private final int[] scores;
+    private final int scored;
+
+    CandidateScores(int[] variants, int[] scores, int scored) {
+        this.variants = variants;
+        this.scores = scores;
+        this.scored = scored;
+    }
+
+    /**
+     * Score of a candidate variant.
+     *
+     * @param variant variant
+     * @return int
+     */
+    public int get(int variant) {
+        int at = Arrays.binarySearch(variants, variant);
+        if (at < 0)
+            throw new IllegalArgumentException("Variant " + variant + " is not a candidate");
+        return scores[at];
+    }
+
+    public int size() {
+        return variants.length;
+    }
+
+    /**
+     * Number of candidates scored in full, the ones whose length bound reached the minimum score.
+     *
+     * @return int
+     */
+    public int getScored() {
+        return scored;
+    }
+}
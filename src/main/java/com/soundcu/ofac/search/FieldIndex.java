@@ -0,0 +1,144 @@
+package com.soundcu.ofac.search;
+
+import com.soundcu.ofac.model.Address;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.Id;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * Exact match lookups for the secondary request fields, keyed by the normalized value and
+ * pointing at entry positions in the {@link NameIndex} it was built from.
+ */
+public final class FieldIndex {
+    private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^a-zA-Z0-9]");
+    private static final char SEPARATOR = '\u0000';
+
+    private final Map<String, BitSet> ids;
+    private final Map<String, BitSet> datesOfBirth;
+    private final Map<String, BitSet> addresses;
+
+    private FieldIndex(Map<String, BitSet> ids, Map<String, BitSet> datesOfBirth, Map<String, BitSet> addresses) {
+        this.ids = ids;
+        this.datesOfBirth = datesOfBirth;
+        this.addresses = addresses;
+    }
+
+    /**
+     * Indexes the ID numbers, dates of birth and addresses of the given entries.
+     *
+     * @param names names
+     * @return FieldIndex
+     */
+    public static FieldIndex build(NameIndex names) {
+        Map<String, BitSet> ids = new HashMap<>();
+        Map<String, BitSet> datesOfBirth = new HashMap<>();
+        Map<String, BitSet> addresses = new HashMap<>();
+
+        List<IndexedEntry> entries = names.getEntries();
+        for (int position = 0; position < entries.size(); position++) {
+            Entry entry = entries.get(position).getEntry();
+            if (entry.getIds() != null) {
+                for (Id id : entry.getIds()) {
+                    if (id.getNumber() != null)
+                        put(ids, normalizeId(id.getNumber()), position);
+                }
+            }
+
+            if (entry.getDates_of_birth() != null) {
+                for (String dob : entry.getDates_of_birth()) {
+                    if (dob != null)
+                        put(datesOfBirth, dob, position);
+                }
+            }
+
+            if (entry.getAddresses() != null) {
+                for (Address address : entry.getAddresses()) {
+                    String key = addressKey(address.getAddress(), address.getCity(), address.getCountry(),
+                            address.getPostal_code(), address.getState());
+                    if (key != null)
+                        put(addresses, key, position);
+                }
+            }
+        }
+        return new FieldIndex(ids, datesOfBirth, addresses);
+    }
+
+    private static void put(Map<String, BitSet> index, String key, int position) {
+        index.computeIfAbsent(key, (k) -> new BitSet()).set(position);
+    }
+
+    /**
+     * Strips everything but letters and digits and lower cases the rest, so IDs compare
+     * regardless of punctuation and case.
+     *
+     * @param id id
+     * @return String
+     */
+    public static String normalizeId(String id) {
+        return NON_ALPHANUMERIC.matcher(id).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Builds the case insensitive lookup key of an address, or null when a part is missing.
+     *
+     * @return String
+     */
+    public static String addressKey(String address, String city, String country, String postalCode, String state) {
+        if (address == null || city == null || country == null || postalCode == null || state == null)
+            return null;
+
+        return new StringBuilder()
+                .append(fold(address)).append(SEPARATOR)
+                .append(fold(city)).append(SEPARATOR)
+                .append(fold(country)).append(SEPARATOR)
+                .append(fold(postalCode)).append(SEPARATOR)
+                .append(fold(state))
+                .toString();
+    }
+
+    private static String fold(String value) {
+        return value.toUpperCase(Locale.ROOT).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds the entries having the normalized ID number to the given set.
+     *
+     * @param id      normalized id
+     * @param matches matches
+     */
+    public void matchId(String id, BitSet matches) {
+        match(ids, id, matches);
+    }
+
+    /**
+     * Adds the entries having the date of birth to the given set.
+     *
+     * @param dob     dob
+     * @param matches matches
+     */
+    public void matchDateOfBirth(String dob, BitSet matches) {
+        match(datesOfBirth, dob, matches);
+    }
+
+    /**
+     * Adds the entries having the address key to the given set.
+     *
+     * @param key     address key
+     * @param matches matches
+     */
+    public void matchAddress(String key, BitSet matches) {
+        match(addresses, key, matches);
+    }
+
+    private static void match(Map<String, BitSet> index, String key, BitSet matches) {
+        BitSet positions = key == null ? null : index.get(key);
+        if (positions != null)
+            matches.or(positions);
+    }
+}
@@ -0,0 +1,19 @@
+package com.soundcu.ofac.search;
+
+import me.xdrop.diffutils.DiffUtils;
+
+/**
+ * Scores with the fuzzywuzzy edit distance, as the search always did. Kept as the reference the
+ * default scorer is checked against, and as a fallback through {@code search.scorer=fuzzywuzzy}.
+ */
+public final class FuzzyWuzzyScorer implements NameScorer {
+    public static final FuzzyWuzzyScorer INSTANCE = new FuzzyWuzzyScorer();
+
+    private FuzzyWuzzyScorer() {
+    }
+
+    @Override
+    public int score(NameForm name, NameForm query) {
+        return (int) Math.round(100 * DiffUtils.getRatio(name.getSorted(), query.getSorted()));
+    }
+}
@@ -0,0 +1,243 @@
+package com.soundcu.ofac.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Trigram inverted index over the name forms of a {@link NameIndex}, used to pick the
+ * names that can still reach a minimum score before any of them is fuzzy scored.
+ * <p>
+ * tokenSortRatio scores {@code 2 * lcs / (l1 + l2)}, so a minimum score gives a minimum
+ * longest common subsequence for every pair of lengths. Every character dropped from either
+ * side to reach that subsequence breaks at most {@code Q - 1} of its trigrams, which gives a
+ * lower bound on the trigrams two names must share. Names under that bound cannot match and
+ * are never returned, so filtering on the index does not lose any result.
+ */
+public final class GramIndex {
+    static final int Q = 3;
+
+    private static final ThreadLocal<int[]> SHARED = ThreadLocal.withInitial(() -> new int[0]);
+
+    private final NameIndex names;
+    private final NameForm[] variants;
+    private final int[] variantEntry;
+    private final int[] variantLength;
+    private final int[] firstVariant;
+    private final int[][] variantsByLength;
+    private final Map<String, int[]> postings;
+
+    private GramIndex(NameIndex names, NameForm[] variants, int[] variantEntry, int[] firstVariant,
+                      Map<String, int[]> postings) {
+        this.names = names;
+        this.variants = variants;
+        this.variantEntry = variantEntry;
+        this.firstVariant = firstVariant;
+        this.postings = postings;
+        this.variantLength = new int[variants.length];
+
+        int maxLength = 0;
+        for (int v = 0; v < variants.length; v++) {
+            variantLength[v] = variants[v].getSorted().length();
+            maxLength = Math.max(maxLength, variantLength[v]);
+        }
+
+        int[] perLength = new int[maxLength + 1];
+        for (int length : variantLength)
+            perLength[length]++;
+        variantsByLength = new int[maxLength + 1][];
+        for (int length = 0; length <= maxLength; length++)
+            variantsByLength[length] = new int[perLength[length]];
+        for (int v = variants.length - 1; v >= 0; v--)
+            variantsByLength[variantLength[v]][--perLength[variantLength[v]]] = v;
+    }
+
+    /**
+     * Indexes every name form of the given entries. Variants are numbered entry by entry in
+     * the order the search tries them.
+     *
+     * @param names names
+     * @return GramIndex
+     */
+    public static GramIndex build(NameIndex names) {
+        List<IndexedEntry> entries = names.getEntries();
+        List<NameForm> variants = new ArrayList<>();
+        int[] firstVariant = new int[entries.size() + 1];
+        for (int e = 0; e < entries.size(); e++) {
+            firstVariant[e] = variants.size();
+            for (NameForm form : entries.get(e).getNames())
+                variants.add(form);
+        }
+        firstVariant[entries.size()] = variants.size();
+
+        int[] variantEntry = new int[variants.size()];
+        for (int e = 0; e < entries.size(); e++) {
+            for (int v = firstVariant[e]; v < firstVariant[e + 1]; v++)
+                variantEntry[v] = e;
+        }
+
+        Map<String, IntList> lists = new HashMap<>();
+        for (int v = 0; v < variants.size(); v++) {
+            for (Map.Entry<String, Integer> gram : grams(variants.get(v).getSorted()).entrySet()) {
+                IntList list = lists.computeIfAbsent(gram.getKey(), (key) -> new IntList());
+                list.add(v);
+                list.add(gram.getValue());
+            }
+        }
+
+        Map<String, int[]> postings = new HashMap<>(lists.size() * 2);
+        lists.forEach((gram, list) -> postings.put(gram, list.toArray()));
+        return new GramIndex(names, variants.toArray(new NameForm[0]), variantEntry, firstVariant, postings);
+    }
+
+    /**
+     * Returns the variants that share enough trigrams with the query to possibly reach
+     * the minimum score.
+     *
+     * @param query        query
+     * @param minimumScore score
+     * @return BitSet of variant numbers
+     */
+    public BitSet candidates(NameForm query, int minimumScore) {
+        int queryLength = query.getSorted().length();
+        BitSet candidates = new BitSet(variants.length);
+
+        int[] threshold = new int[variantsByLength.length];
+        for (int length = 0; length < variantsByLength.length; length++) {
+            if (minimumCommon(queryLength, length, minimumScore) > Math.min(queryLength, length)) {
+                // too long or too short to ever reach the score, whatever the characters
+                threshold[length] = Integer.MAX_VALUE;
+                continue;
+            }
+            threshold[length] = minimumSharedGrams(queryLength, length, minimumScore);
+            if (threshold[length] <= 0) {
+                for (int v : variantsByLength[length])
+                    candidates.set(v);
+            }
+        }
+
+        int[] shared = SHARED.get();
+        if (shared.length < variants.length) {
+            shared = new int[variants.length];
+            SHARED.set(shared);
+        }
+
+        IntList touched = new IntList();
+        for (Map.Entry<String, Integer> gram : grams(query.getSorted()).entrySet()) {
+            int[] posting = postings.get(gram.getKey());
+            if (posting == null)
+                continue;
+
+            int queryCount = gram.getValue();
+            for (int i = 0; i < posting.length; i += 2) {
+                int v = posting[i];
+                if (shared[v] == 0)
+                    touched.add(v);
+                shared[v] += Math.min(queryCount, posting[i + 1]);
+            }
+        }
+
+        for (int i = 0; i < touched.size(); i++) {
+            int v = touched.get(i);
+            if (shared[v] >= threshold[variantLength[v]])
+                candidates.set(v);
+            shared[v] = 0;
+        }
+        return candidates;
+    }
+
+    /**
+     * Lower bound on the trigrams two names of the given lengths share when they score at least
+     * the minimum. A bound of zero or less means the index cannot rule the pair out.
+     *
+     * @param queryLength  queryLength
+     * @param length       length
+     * @param minimumScore score
+     * @return int
+     */
+    static int minimumSharedGrams(int queryLength, int length, int minimumScore) {
+        int total = queryLength + length;
+        int lcs = minimumCommon(queryLength, length, minimumScore);
+        return lcs - Q + 1 - (Q - 1) * (total - 2 * lcs);
+    }
+
+    /**
+     * Shortest common subsequence two names of the given lengths need to score at least the minimum.
+     *
+     * @param queryLength  queryLength
+     * @param length       length
+     * @param minimumScore score
+     * @return int
+     */
+    static int minimumCommon(int queryLength, int length, int minimumScore) {
+        // round(100 * 2 * lcs / total) >= score  <=>  400 * lcs >= (2 * score - 1) * total
+        long required = (long) (2 * minimumScore - 1) * (queryLength + length);
+        return required <= 0 ? 0 : (int) ((required + 399) / 400);
+    }
+
+    static Map<String, Integer> grams(String form) {
+        Map<String, Integer> grams = new HashMap<>();
+        for (int i = 0; i + Q <= form.length(); i++)
+            grams.merge(form.substring(i, i + Q), 1, Integer::sum);
+        return grams;
+    }
+
+    public NameIndex getNames() {
+        return names;
+    }
+
+    public NameForm getVariant(int variant) {
+        return variants[variant];
+    }
+
+    /**
+     * Position in the name index of the entry a variant belongs to.
+     *
+     * @param variant variant
+     * @return int
+     */
+    public int getEntry(int variant) {
+        return variantEntry[variant];
+    }
+
+    /**
+     * Number of the first variant of an entry; the variants of entry {@code e} are
+     * {@code firstVariant(e)} up to {@code firstVariant(e + 1)}.
+     *
+     * @param entry entry
+     * @return int
+     */
+    public int firstVariant(int entry) {
+        return firstVariant[entry];
+    }
+
+    public int variantCount() {
+        return variants.length;
+    }
+
+    private static final class IntList {
+        private int[] values = new int[8];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.soundcu.ofac.search;
+
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.EntryJson;
+
+/**
+ * An entry together with the precompiled forms of every name the search tries,
+ * in the order it tries them: the primary name, its comma separated parts and the alt names,
+ * and with its JSON rendered for responses and a hash of that JSON to tell list versions apart.
+ */
+public final class IndexedEntry {
+    private final Entry entry;
+    private final int ordinal;
+    private final NameForm[] names;
+    private final EntryJson json;
+    private final long contentHash;
+
+    IndexedEntry(Entry entry, int ordinal, NameForm[] names, EntryJson json, long contentHash) {
+        this.entry = entry;
+        this.ordinal = ordinal;
+        this.names = names;
+        this.json = json;
+        this.contentHash = contentHash;
+    }
+
+    public Entry getEntry() {
+        return entry;
+    }
+
+    /**
+     * Position of the entry in the source list.
+     *
+     * @return int
+     */
+    public int getOrdinal() {
+        return ordinal;
+    }
+
+    public NameForm[] getNames() {
+        return names;
+    }
+
+    public EntryJson getJson() {
+        return json;
+    }
+
+    /**
+     * Leading 64 bits of the SHA-256 of the entry's JSON: equal for entries with equal content.
+     *
+     * @return long
+     */
+    public long getContentHash() {
+        return contentHash;
+    }
+}
@@ -0,0 +1,95 @@
+package com.soundcu.ofac.search;
+
+import java.util.Arrays;
+
+/**
+ * Computes the fuzzywuzzy ratio without allocating. With insertions and deletions costing 1 and
+ * substitutions 2, the edit distance of two strings is {@code len1 + len2 - 2 * lcs}, so the
+ * ratio is {@code 2 * lcs / (len1 + len2)}; the longest common subsequence is found with a two
+ * row dynamic program over the precomputed characters, in rows each thread reuses.
+ */
+public final class LcsScorer implements NameScorer {
+    public static final LcsScorer INSTANCE = new LcsScorer();
+
+    private static final ThreadLocal<int[][]> ROWS = ThreadLocal.withInitial(() -> new int[2][64]);
+
+    private LcsScorer() {
+    }
+
+    @Override
+    public int score(NameForm name, NameForm query) {
+        char[] a = name.chars();
+        char[] b = query.chars();
+        return ratio(lcs(a, b), a.length + b.length);
+    }
+
+    /**
+     * The score of two strings with the given total length and common subsequence.
+     *
+     * @param lcs   lcs
+     * @param total total
+     * @return int
+     */
+    static int ratio(int lcs, int total) {
+        if (total == 0)
+            return 0;
+        // same expression as DiffUtils.getRatio, so the rounding cannot differ
+        return (int) Math.round(100 * ((double) (2 * lcs) / total));
+    }
+
+    /**
+     * Length of the longest common subsequence, after skipping the common prefix and suffix.
+     *
+     * @param a a
+     * @param b b
+     * @return int
+     */
+    static int lcs(char[] a, char[] b) {
+        int start = 0;
+        int aEnd = a.length;
+        int bEnd = b.length;
+        while (start < aEnd && start < bEnd && a[start] == b[start])
+            start++;
+        while (aEnd > start && bEnd > start && a[aEnd - 1] == b[bEnd - 1]) {
+            aEnd--;
+            bEnd--;
+        }
+        int common = start + a.length - aEnd;
+        if (aEnd == start || bEnd == start)
+            return common;
+
+        // the shorter string runs along the rows
+        if (aEnd - start < bEnd - start) {
+            char[] swap = a;
+            a = b;
+            b = swap;
+            int end = aEnd;
+            aEnd = bEnd;
+            bEnd = end;
+        }
+        int width = bEnd - start;
+        int[][] rows = ROWS.get();
+        if (rows[0].length <= width) {
+            rows = new int[][] {new int[width + 1], new int[width + 1]};
+            ROWS.set(rows);
+        }
+        int[] previous = rows[0];
+        int[] current = rows[1];
+        Arrays.fill(previous, 0, width + 1, 0);
+        current[0] = 0;
+
+        for (int i = start; i < aEnd; i++) {
+            char c = a[i];
+            for (int j = 1; j <= width; j++) {
+                if (c == b[start + j - 1])
+                    current[j] = previous[j - 1] + 1;
+                else
+                    current[j] = Math.max(previous[j], current[j - 1]);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return common + previous[width];
+    }
+}
@@ -0,0 +1,128 @@
+package com.soundcu.ofac.search;
+
+import com.soundcu.ofac.model.Entry;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The entries added, changed and removed between two list snapshots. Entries are matched by
+ * source and {@code entity_number}, falling back to source and name for entries without one,
+ * and compared by the content hash each snapshot computed when it rendered the entry's JSON.
+ */
+public final class ListDiff {
+
+    private final String previousVersion;
+    private final String nextVersion;
+    private final BitSet added;
+    private final BitSet changed;
+    private final List<Entry> removed;
+
+    private ListDiff(String previousVersion, String nextVersion, BitSet added, BitSet changed, List<Entry> removed) {
+        this.previousVersion = previousVersion;
+        this.nextVersion = nextVersion;
+        this.added = added;
+        this.changed = changed;
+        this.removed = removed;
+    }
+
+    /**
+     * Compares two snapshots.
+     *
+     * @param previous previous
+     * @param next     next
+     * @return ListDiff
+     */
+    public static ListDiff between(ListSnapshot previous, ListSnapshot next) {
+        Map<String, Long> before = hashes(previous.getNames().getEntries());
+        List<IndexedEntry> entries = next.getNames().getEntries();
+        Map<String, Integer> seen = new HashMap<>();
+        BitSet added = new BitSet(entries.size());
+        BitSet changed = new BitSet(entries.size());
+        for (int position = 0; position < entries.size(); position++) {
+            IndexedEntry entry = entries.get(position);
+            Long hash = before.remove(key(entry.getEntry(), seen));
+            if (hash == null)
+                added.set(position);
+            else if (hash != entry.getContentHash())
+                changed.set(position);
+        }
+
+        List<Entry> removed = new ArrayList<>();
+        if (!before.isEmpty()) {
+            seen.clear();
+            for (Entry entry : previous.getEntries()) {
+                if (before.containsKey(key(entry, seen)))
+                    removed.add(entry);
+            }
+        }
+        return new ListDiff(previous.getVersion(), next.getVersion(), added, changed, removed);
+    }
+
+    private static Map<String, Long> hashes(List<IndexedEntry> entries) {
+        Map<String, Integer> seen = new HashMap<>();
+        Map<String, Long> hashes = new HashMap<>(entries.size() * 2);
+        for (IndexedEntry entry : entries)
+            hashes.put(key(entry.getEntry(), seen), entry.getContentHash());
+        return hashes;
+    }
+
+    /**
+     * Identity of an entry within its list; repeated keys are told apart by their occurrence.
+     */
+    private static String key(Entry entry, Map<String, Integer> seen) {
+        String key = entry.getSource() + '\0' + (entry.getEntity_number() != null
+                ? entry.getEntity_number()
+                : '\0' + entry.getName());
+        int occurrence = seen.merge(key, 1, Integer::sum);
+        return occurrence == 1 ? key : key + '\0' + occurrence;
+    }
+
+    public String getPreviousVersion() {
+        return previousVersion;
+    }
+
+    public String getNextVersion() {
+        return nextVersion;
+    }
+
+    /**
+     * Positions in the new snapshot of the entries it added.
+     *
+     * @return BitSet
+     */
+    public BitSet getAdded() {
+        return added;
+    }
+
+    /**
+     * Positions in the new snapshot of the entries whose content changed.
+     *
+     * @return BitSet
+     */
+    public BitSet getChanged() {
+        return changed;
+    }
+
+    public List<Entry> getRemoved() {
+        return removed;
+    }
+
+    /**
+     * Positions in the new snapshot a subject has to be rescreened against: added or changed.
+     *
+     * @return BitSet
+     */
+    public BitSet getDelta() {
+        BitSet delta = (BitSet) added.clone();
+        delta.or(changed);
+        return delta;
+    }
+
+    public boolean isEmpty() {
+        return added.isEmpty() && changed.isEmpty() && removed.isEmpty();
+    }
+}
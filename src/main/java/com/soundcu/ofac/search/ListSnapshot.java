@@ -0,0 +1,157 @@
+package com.soundcu.ofac.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.model.SourceMetaData;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * One loaded version of the screening list with every index derived from it. A snapshot is
+ * built completely before it is published and never changes afterwards, so a request reading
+ * it once sees a consistent list from start to finish.
+ */
+public final class ListSnapshot {
+    private final String version;
+    private final Instant loadedAt;
+    private final List<Entry> entries;
+    private final List<SourceMetaData> sources;
+    private final GramIndex grams;
+    private final FieldIndex fields;
+    private final ActiveEntries active;
+    private final Partitions partitions;
+    private final Map<String, List<SourceMetaData>> sourcesByName = new LinkedHashMap<>();
+    private final long jsonSize;
+
+    private ListSnapshot(String version, Instant loadedAt, List<Entry> entries, List<SourceMetaData> sources,
+                         GramIndex grams, FieldIndex fields, ActiveEntries active, Partitions partitions) {
+        this.version = version;
+        this.loadedAt = loadedAt;
+        this.entries = entries;
+        this.sources = sources;
+        this.grams = grams;
+        this.fields = fields;
+        this.active = active;
+        this.partitions = partitions;
+        for (SourceMetaData source : sources) {
+            if (source.getSource() != null)
+                sourcesByName.computeIfAbsent(source.getSource(), (name) -> new ArrayList<>(1)).add(source);
+        }
+        // handed to every response of that source, and cached results share them
+        sourcesByName.replaceAll((name, metadata) -> List.copyOf(metadata));
+        long size = 0;
+        for (IndexedEntry entry : grams.getNames().getEntries())
+            size += entry.getJson().size();
+        this.jsonSize = size;
+    }
+
+    /**
+     * Builds the indexes for a freshly mapped list.
+     *
+     * @param version  version
+     * @param entries  entries
+     * @param sources      sources
+     * @param objectMapper the application's ObjectMapper, to render the entries with
+     * @return ListSnapshot
+     */
+    public static ListSnapshot build(String version, List<Entry> entries, List<SourceMetaData> sources,
+                                     ObjectMapper objectMapper) {
+        NameIndex names = NameIndex.build(entries, objectMapper);
+        return new ListSnapshot(version, Instant.now(), Collections.unmodifiableList(entries),
+                Collections.unmodifiableList(sources), GramIndex.build(names), FieldIndex.build(names),
+                ActiveEntries.build(names), Partitions.build(names));
+    }
+
+    /**
+     * Identifies the list content: the same document always gets the same version.
+     *
+     * @return String
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    public Instant getLoadedAt() {
+        return loadedAt;
+    }
+
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    public List<SourceMetaData> getSources() {
+        return sources;
+    }
+
+    public NameIndex getNames() {
+        return grams.getNames();
+    }
+
+    public GramIndex getGrams() {
+        return grams;
+    }
+
+    public FieldIndex getFields() {
+        return fields;
+    }
+
+    public ActiveEntries getActive() {
+        return active;
+    }
+
+    public Partitions getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Bytes held by the pre-rendered JSON of every entry.
+     *
+     * @return long
+     */
+    public long getJsonSize() {
+        return jsonSize;
+    }
+
+    /**
+     * The metadata of the sources the matches came from, in list order. Matches from a single
+     * source, the usual case, share an unmodifiable list built with the snapshot.
+     *
+     * @param matches matches
+     * @return List
+     */
+    public List<SourceMetaData> sourcesUsed(List<Match> matches) {
+        if (matches.isEmpty())
+            return Collections.emptyList();
+
+        Set<String> used = null;
+        String first = matches.get(0).getEntry().getSource();
+        for (Match match : matches) {
+            String source = match.getEntry().getSource();
+            if (used != null)
+                used.add(source);
+            else if (!Objects.equals(first, source)) {
+                used = new HashSet<>();
+                used.add(first);
+                used.add(source);
+            }
+        }
+        if (used == null)
+            return first == null ? Collections.emptyList() : sourcesByName.getOrDefault(first, Collections.emptyList());
+
+        List<SourceMetaData> metadata = new ArrayList<>(used.size());
+        for (SourceMetaData source : sources) {
+            if (source.getSource() != null && used.contains(source.getSource()))
+                metadata.add(source);
+        }
+        return metadata;
+    }
+}
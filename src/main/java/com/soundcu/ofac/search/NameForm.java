@@ -0,0 +1,93 @@
+package com.soundcu.ofac.search;
+
+import me.xdrop.fuzzywuzzy.ToStringFunction;
+import me.xdrop.fuzzywuzzy.algorithms.DefaultStringFunction;
+
+import java.util.Arrays;
+
+/**
+ * A name reduced to the form {@code FuzzySearch.tokenSortRatio} compares: non alphanumerics
+ * replaced, lower cased, then tokens sorted and joined by a single space.
+ * Scoring two forms gives the same result as tokenSortRatio on the original strings.
+ */
+public final class NameForm {
+    private static final ToStringFunction<String> PROCESSOR = new DefaultStringFunction();
+
+    private final String original;
+    private final String sorted;
+    private final char[] chars;
+    private final int spaces;
+    // built on first use as a query; racing threads build equal patterns
+    private BitPattern pattern;
+
+    private NameForm(String original, String sorted) {
+        this.original = original;
+        this.sorted = sorted;
+        this.chars = sorted.toCharArray();
+        this.spaces = sorted.isEmpty() ? 0 : sorted.split(" ", -1).length - 1;
+    }
+
+    /**
+     * Normalizes and token sorts a name.
+     *
+     * @param name name
+     * @return NameForm
+     */
+    public static NameForm of(String name) {
+        String[] tokens = PROCESSOR.apply(name).split("\\s+");
+        Arrays.sort(tokens);
+        return new NameForm(name, String.join(" ", tokens).trim());
+    }
+
+    public String getOriginal() {
+        return original;
+    }
+
+    public String getSorted() {
+        return sorted;
+    }
+
+    char[] chars() {
+        return chars;
+    }
+
+    /**
+     * Match masks of this form as a query, only for forms of at most 64 characters.
+     *
+     * @return BitPattern
+     */
+    BitPattern pattern() {
+        BitPattern built = pattern;
+        if (built == null)
+            pattern = built = BitPattern.of(chars);
+        return built;
+    }
+
+    /**
+     * Scores this form against another with the bit-parallel scorer, identical to tokenSortRatio
+     * on the original names.
+     *
+     * @param other other
+     * @return int
+     */
+    public int score(NameForm other) {
+        return BitParallelScorer.INSTANCE.score(this, other);
+    }
+
+    /**
+     * The highest score this form can reach against another, from their lengths and token counts
+     * alone. A common subsequence pairs spaces with spaces and other characters with other
+     * characters, so it is at most the shorter of each; scoring is computed the same way as
+     * {@link #score(NameForm)}, so {@code score(other) <= maxScore(other)} always holds.
+     *
+     * @param other other
+     * @return int
+     */
+    public int maxScore(NameForm other) {
+        int total = sorted.length() + other.sorted.length();
+        if (total == 0)
+            return 0;
+        int lcs = Math.min(sorted.length() - spaces, other.sorted.length() - other.spaces) + Math.min(spaces, other.spaces);
+        return (int) Math.round(100 * ((double) (2 * lcs) / total));
+    }
+}
@@ -0,0 +1,117 @@
+package com.soundcu.ofac.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.EntryJson;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Precompiled name forms for every entry of a list. Built once per list load so a search
+ * only has to normalize the query name.
+ */
+public final class NameIndex {
+    private final List<IndexedEntry> entries;
+    private final int[] ordinals;
+
+    private NameIndex(List<IndexedEntry> entries) {
+        this.entries = entries;
+        this.ordinals = new int[entries.size()];
+        for (int i = 0; i < ordinals.length; i++)
+            ordinals[i] = entries.get(i).getOrdinal();
+    }
+
+    /**
+     * Builds the index, keeping the entries in list order, and renders and hashes each entry's JSON.
+     *
+     * @param entries      entries
+     * @param objectMapper the application's ObjectMapper, to render the entries with
+     * @return NameIndex
+     */
+    public static NameIndex build(List<Entry> entries, ObjectMapper objectMapper) {
+        List<IndexedEntry> indexed = new ArrayList<>(entries.size());
+        MessageDigest digest = sha256();
+        for (int i = 0; i < entries.size(); i++) {
+            Entry entry = entries.get(i);
+            EntryJson json = EntryJson.of(entry, objectMapper);
+            long hash = ByteBuffer.wrap(digest.digest(json.getOpen().asUnquotedUTF8())).getLong();
+            indexed.add(new IndexedEntry(entry, i, compileNames(entry), json, hash));
+        }
+        return new NameIndex(Collections.unmodifiableList(indexed));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Indexes a slice of an already indexed list. The entries keep their names and their
+     * position in the full list, in list order.
+     *
+     * @param entries entries
+     * @return NameIndex
+     */
+    static NameIndex of(List<IndexedEntry> entries) {
+        return new NameIndex(Collections.unmodifiableList(new ArrayList<>(entries)));
+    }
+
+    /**
+     * Compiles the names of an entry. Variants that normalize to an already seen form are
+     * dropped since they can only repeat an earlier score.
+     *
+     * @param entry entry
+     * @return NameForm[]
+     */
+    private static NameForm[] compileNames(Entry entry) {
+        Map<String, NameForm> forms = new LinkedHashMap<>();
+        if (entry.getName() != null) {
+            add(forms, entry.getName());
+            for (String part : entry.getName().split(","))
+                add(forms, part);
+        }
+
+        if (entry.getAlt_names() != null) {
+            for (String altName : entry.getAlt_names()) {
+                if (altName != null)
+                    add(forms, altName);
+            }
+        }
+        return forms.values().toArray(new NameForm[0]);
+    }
+
+    private static void add(Map<String, NameForm> forms, String name) {
+        NameForm form = NameForm.of(name);
+        forms.putIfAbsent(form.getSorted(), form);
+    }
+
+    public List<IndexedEntry> getEntries() {
+        return entries;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Index in this slice of the entry at the given position of the full list.
+     *
+     * @param ordinal position in the full list
+     * @return index, or -1 when the entry is not part of this slice
+     */
+    public int indexOf(int ordinal) {
+        int index = Arrays.binarySearch(ordinals, ordinal);
+        return index < 0 ? -1 : index;
+    }
+}
@@ -0,0 +1,66 @@
+package com.soundcu.ofac.search;
+
+import java.util.BitSet;
+
+/**
+ * Scores a name against a query the way {@code FuzzySearch.tokenSortRatio} does, on forms that
+ * are already normalized and token sorted.
+ */
+public interface NameScorer {
+    /**
+     * Scores a name against a query, 0 to 100.
+     *
+     * @param name  name
+     * @param query query
+     * @return int
+     */
+    int score(NameForm name, NameForm query);
+
+    /**
+     * Scores the query against all the candidate variants of the index in one pass, for engines
+     * that gain from seeing many names at once. Only candidates whose length bound reaches the
+     * minimum score need a real score. This runs before the search scans the names, so it cannot
+     * skip candidates the scan would: those of inactive entries, or below the ranking threshold.
+     *
+     * @param grams        grams
+     * @param candidates   candidate variants
+     * @param query        query
+     * @param minimumScore score
+     * @return CandidateScores, or null to have each name scored on its own
+     */
+    default CandidateScores scoreAll(GramIndex grams, BitSet candidates, NameForm query, int minimumScore) {
+        return null;
+    }
+
+    /**
+     * Looks up a scoring engine by name: {@code bitparallel}, the default, {@code lcs} or
+     * {@code fuzzywuzzy}. With {@code vector} set the bit-parallel engine scores candidates in
+     * SIMD lanes, when built with the {@code vector} profile and the JVM adds the incubating
+     * Vector API module; otherwise it scores one name at a time.
+     *
+     * @param engine engine
+     * @param vector vector
+     * @return NameScorer
+     */
+    static NameScorer of(String engine, boolean vector) {
+        switch (engine) {
+            case "bitparallel":
+                return vector ? vectorized() : BitParallelScorer.INSTANCE;
+            case "lcs":
+                return LcsScorer.INSTANCE;
+            case "fuzzywuzzy":
+                return FuzzyWuzzyScorer.INSTANCE;
+            default:
+                throw new IllegalArgumentException("Unknown name scorer '" + engine + "'");
+        }
+    }
+
+    private static NameScorer vectorized() {
+        try {
+            // loaded by name so that nothing links against jdk.incubator.vector unless asked to
+            return (NameScorer) Class.forName("com.soundcu.ofac.search.VectorScorer").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return BitParallelScorer.INSTANCE;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.soundcu.ofac.search;
+
+import com.soundcu.ofac.model.Entry;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The list cut into slices at load time. Every entry type gets its own trigram index, so a
+ * search for one type only counts grams and scores names of that type; every source gets the
+ * positions of its entries, so narrowing a search to some sources is a bit set intersection.
+ * Types and sources are matched ignoring case, sources by full name or by the short code in
+ * parentheses, such as {@code SDN}.
+ */
+public final class Partitions {
+    private static final Pattern CODE = Pattern.compile("\\(([^)]+)\\)");
+
+    private final Map<String, GramIndex> types;
+    private final Map<String, BitSet> sources;
+    private final GramIndex empty;
+
+    private Partitions(Map<String, GramIndex> types, Map<String, BitSet> sources, GramIndex empty) {
+        this.types = types;
+        this.sources = sources;
+        this.empty = empty;
+    }
+
+    /**
+     * Partitions an indexed list by entry type and by source.
+     *
+     * @param names names
+     * @return Partitions
+     */
+    public static Partitions build(NameIndex names) {
+        Map<String, List<IndexedEntry>> byType = new HashMap<>();
+        Map<String, BitSet> bySource = new HashMap<>();
+        for (IndexedEntry indexed : names.getEntries()) {
+            Entry entry = indexed.getEntry();
+            if (entry.getType() != null)
+                byType.computeIfAbsent(key(entry.getType()), (type) -> new ArrayList<>()).add(indexed);
+
+            if (entry.getSource() != null) {
+                bySource.computeIfAbsent(key(entry.getSource()), (source) -> new BitSet()).set(indexed.getOrdinal());
+                Matcher code = CODE.matcher(entry.getSource());
+                if (code.find())
+                    bySource.computeIfAbsent(key(code.group(1)), (source) -> new BitSet()).set(indexed.getOrdinal());
+            }
+        }
+
+        Map<String, GramIndex> types = new HashMap<>();
+        byType.forEach((type, entries) -> types.put(type, GramIndex.build(NameIndex.of(entries))));
+        return new Partitions(types, bySource, GramIndex.build(NameIndex.of(Collections.emptyList())));
+    }
+
+    private static String key(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * The trigram index of the entries of one type, an empty one when the list has no entry of
+     * that type. Its entries keep their position in the full list as their ordinal.
+     *
+     * @param type type
+     * @return GramIndex
+     */
+    public GramIndex type(String type) {
+        return types.getOrDefault(key(type), empty);
+    }
+
+    /**
+     * Whether any entry comes from the given source.
+     *
+     * @param source full name or short code
+     * @return boolean
+     */
+    public boolean hasSource(String source) {
+        return sources.containsKey(key(source));
+    }
+
+    /**
+     * Positions of the entries coming from any of the given sources; unknown sources add nothing.
+     *
+     * @param names full names or short codes
+     * @return BitSet
+     */
+    public BitSet sources(Collection<String> names) {
+        BitSet positions = new BitSet();
+        for (String name : names) {
+            BitSet source = sources.get(key(name));
+            if (source != null)
+                positions.or(source);
+        }
+        return positions;
+    }
+}
@@ -0,0 +1,136 @@
+package com.soundcu.ofac.search;
+
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A validated screening request with every field already normalized the way the indexes
+ * compare it, so a search never looks at the raw request again.
+ */
+public final class ScreeningQuery {
+    public static final String ADDRESS = "address";
+    public static final String BIRTH_DATE = "birthdate";
+    public static final String CITY = "city";
+    public static final String COUNTRY = "country";
+    public static final String ID = "id_number";
+    public static final String NAME = "name";
+    public static final String POSTAL_CODE = "postal_code";
+    public static final String TAX_ID = "ssn";
+    public static final String STATE = "state";
+
+    private static final String[] FIELDS = {ADDRESS, BIRTH_DATE, CITY, COUNTRY, ID, NAME, POSTAL_CODE, TAX_ID, STATE};
+
+    private final String name;
+    private final NameForm nameForm;
+    private final String birthDate;
+    private final String idNumber;
+    private final String taxId;
+    private final String addressKey;
+    private final Map<String, String> fields;
+
+    private ScreeningQuery(String name, String birthDate, String idNumber, String taxId, String addressKey,
+                           Map<String, String> fields) {
+        this.name = name;
+        this.nameForm = name == null ? null : NameForm.of(name);
+        this.birthDate = birthDate;
+        this.idNumber = idNumber == null ? null : FieldIndex.normalizeId(idNumber);
+        this.taxId = taxId == null ? null : FieldIndex.normalizeId(taxId);
+        this.addressKey = addressKey;
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    /**
+     * Reads the query fields of a request entity.
+     *
+     * @param entity entity
+     * @return ScreeningQuery
+     */
+    public static ScreeningQuery of(JSONObject entity) {
+        String addressKey = FieldIndex.addressKey(string(entity, ADDRESS), string(entity, CITY),
+                string(entity, COUNTRY), string(entity, POSTAL_CODE), string(entity, STATE));
+        Map<String, String> fields = new TreeMap<>();
+        for (String field : FIELDS) {
+            if (entity.has(field))
+                fields.put(field, entity.getString(field));
+        }
+        return new ScreeningQuery(string(entity, NAME), string(entity, BIRTH_DATE), string(entity, ID),
+                string(entity, TAX_ID), addressKey, fields);
+    }
+
+    private static String string(JSONObject entity, String field) {
+        return entity.has(field) ? entity.getString(field) : null;
+    }
+
+    /**
+     * The name as sent, or null.
+     *
+     * @return String
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * The token sorted name, or null when the request has no name.
+     *
+     * @return NameForm
+     */
+    public NameForm getNameForm() {
+        return nameForm;
+    }
+
+    public String getBirthDate() {
+        return birthDate;
+    }
+
+    /**
+     * The normalized ID number, or null.
+     *
+     * @return String
+     */
+    public String getIdNumber() {
+        return idNumber;
+    }
+
+    /**
+     * The normalized tax ID, or null.
+     *
+     * @return String
+     */
+    public String getTaxId() {
+        return taxId;
+    }
+
+    /**
+     * The address lookup key, or null unless all address fields were sent.
+     *
+     * @return String
+     */
+    public String getAddressKey() {
+        return addressKey;
+    }
+
+    /**
+     * The query fields exactly as sent, sorted by field name; {@code of(new JSONObject(fields))}
+     * rebuilds the same query.
+     *
+     * @return Map
+     */
+    public Map<String, String> getFields() {
+        return fields;
+    }
+
+    /**
+     * Identifies the query by its normalized fields: two requests with the same key always get
+     * the same matches from the same list.
+     *
+     * @return String
+     */
+    public String getKey() {
+        return (nameForm == null ? null : nameForm.getSorted()) + "\0" + birthDate + "\0" + idNumber + "\0" + taxId
+                + "\0" + addressKey;
+    }
+}
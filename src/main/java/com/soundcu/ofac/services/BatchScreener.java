@@ -0,0 +1,274 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.soundcu.ofac.exceptions.BadRequestException;
+import com.soundcu.ofac.exceptions.ServiceException;
+import com.soundcu.ofac.model.BatchResult;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.ServiceError;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Screens many entities in one request. Items are parsed from the request as they are needed,
+ * screened in parallel on a fixed pool against a single list snapshot and written back as NDJSON
+ * lines in the order they complete; each batch keeps at most {@code batch.window} items parsed
+ * and in flight, so a large batch neither floods the pool nor sits in memory.
+ */
+@Service
+@Slf4j
+public class BatchScreener {
+    private static final String ID = "id";
+
+    @Value("${batch.threads}")
+    private int threads;
+
+    @Value("${batch.window}")
+    private int window;
+
+    @Value("${batch.max-items}")
+    private int maxItems;
+
+    @Autowired
+    private RequestDecoder decoder;
+
+    @Autowired
+    private ScreeningService screeningService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private OfacLogger ofacLogger;
+
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(size, (task) -> {
+            Thread thread = new Thread(task, "batch-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Opens a JSON array or an NDJSON stream of entities. Only the start of the body is read
+     * here, so a body that is not JSON at all fails the request; the items are parsed one at a
+     * time while the batch is screened. Decoding and validation happen per item on the pool, so
+     * one bad item does not fail the batch.
+     *
+     * @param in request body
+     * @return Items
+     * @throws IOException if the body cannot be read
+     */
+    public Items read(InputStream in) throws IOException {
+        try {
+            return new Items(objectMapper.readerFor(JsonNode.class).readValues(in), maxItems);
+        } catch (JsonProcessingException e) {
+            throw new BadRequestException(141, e.getOriginalMessage());
+        }
+    }
+
+    /**
+     * Screens the items against the snapshot and writes one {@link BatchResult} line per item
+     * as soon as it completes, logging each line as it is written. Output is flushed whenever no
+     * finished result is waiting. When the rest of the body cannot be parsed, or holds more than
+     * {@code batch.max-items} items, the batch ends with an error line for the item at that
+     * position. The items are closed once read.
+     *
+     * @param items        items
+     * @param snapshot     snapshot
+     * @param minimumScore score
+     * @param type         entry type to keep, or null for all types
+     * @param sources      sources to keep, or null for all sources
+     * @param maxResults   most matches per item, or 0 for all of them
+     * @param requestor    requestor
+     * @param path         request path, for the audit log
+     * @param out          response body
+     * @return number of items that failed
+     * @throws IOException if the client goes away
+     */
+    public int screen(Items items, ListSnapshot snapshot, int minimumScore, String type, List<String> sources,
+                      int maxResults, Requestor requestor, String path, OutputStream out) throws IOException {
+        long start = System.nanoTime();
+        CompletionService<BatchResult> completion = new ExecutorCompletionService<>(executor);
+        ObjectWriter writer = objectMapper.writerFor(BatchResult.class);
+        BatchResult unreadable = null;
+        int inFlight = 0;
+        int errors = 0;
+        try (items) {
+            while (unreadable == null || inFlight > 0) {
+                while (unreadable == null && inFlight < window) {
+                    Item item;
+                    try {
+                        if (!items.hasNext())
+                            break;
+                        item = items.next();
+                    } catch (ServiceException e) {
+                        unreadable = new BatchResult(String.valueOf(items.getCount()),
+                                new ServiceError(e.getCode(), e.getStatus(), e.getMessage()));
+                        break;
+                    }
+                    completion.submit(() -> screen(item, snapshot, minimumScore, type, sources, maxResults, requestor));
+                    inFlight++;
+                }
+                if (inFlight == 0)
+                    break;
+
+                Future<BatchResult> done = completion.poll();
+                if (done == null) {
+                    out.flush();
+                    done = completion.take();
+                }
+                inFlight--;
+                errors += write(done.get(), writer, path, out);
+            }
+            if (unreadable != null)
+                errors += write(unreadable, writer, path, out);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Batch screening interrupted");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+        out.flush();
+
+        long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+        logger.info("Screened " + items.getCount() + " batch items (" + errors + " failed) in " + millis + " ms, "
+                + (items.getCount() * 1000L / millis) + " items/s");
+        return errors;
+    }
+
+    /**
+     * Writes one result line and hands the same bytes to the audit log.
+     *
+     * @return 1 if the item failed, else 0
+     */
+    private int write(BatchResult result, ObjectWriter writer, String path, OutputStream out) throws IOException {
+        byte[] line = writer.writeValueAsBytes(result);
+        out.write(line);
+        out.write('\n');
+        ofacLogger.logBatchResult(path, line);
+        return result.getError() == null ? 0 : 1;
+    }
+
+    private BatchResult screen(Item item, ListSnapshot snapshot, int minimumScore, String type, List<String> sources,
+                               int maxResults, Requestor requestor) {
+        try {
+            if (!item.entity.isObject())
+                throw new BadRequestException(144, "Batch items must be JSON objects.");
+
+            ScreeningQuery query = decoder.decode(new JSONObject(item.entity.toString()));
+            return new BatchResult(item.id, screeningService.screenRow(snapshot, query, minimumScore, type, sources, maxResults, requestor));
+        } catch (ServiceException e) {
+            return new BatchResult(item.id, new ServiceError(e.getCode(), e.getStatus(), e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.error("Failed to screen batch item " + item.id, e);
+            return new BatchResult(item.id, new ServiceError(500, HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage()));
+        }
+    }
+
+    /**
+     * The entities of a batch, parsed from the request one at a time.
+     */
+    public static final class Items implements Closeable {
+        private final MappingIterator<JsonNode> nodes;
+        private final int maxItems;
+        private int count;
+
+        private Items(MappingIterator<JsonNode> nodes, int maxItems) {
+            this.nodes = nodes;
+            this.maxItems = maxItems;
+        }
+
+        /**
+         * @throws BadRequestException if the next item cannot be parsed
+         */
+        boolean hasNext() throws IOException {
+            try {
+                return nodes.hasNextValue();
+            } catch (JsonProcessingException e) {
+                throw new BadRequestException(141, e.getOriginalMessage());
+            }
+        }
+
+        /**
+         * @throws BadRequestException if the item cannot be parsed or the batch holds too many
+         */
+        Item next() throws IOException {
+            if (count == maxItems)
+                throw new BadRequestException(144, "A batch holds at most " + maxItems + " items.");
+            try {
+                Item item = new Item(count, nodes.nextValue());
+                count++;
+                return item;
+            } catch (JsonProcessingException e) {
+                throw new BadRequestException(141, e.getOriginalMessage());
+            }
+        }
+
+        /**
+         * Number of items read so far.
+         */
+        public int getCount() {
+            return count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            nodes.close();
+        }
+    }
+
+    /**
+     * One entity of a batch with the caller's id, or its position in the batch when it has none.
+     */
+    public static final class Item {
+        private final String id;
+        private final JsonNode entity;
+
+        private Item(int position, JsonNode entity) {
+            JsonNode id = entity.get(ID);
+            this.id = id != null && id.isValueNode() ? id.asText() : String.valueOf(position);
+            this.entity = entity;
+        }
+
+        public String getId() {
+            return id;
+        }
+    }
+}
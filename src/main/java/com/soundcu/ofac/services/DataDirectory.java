@@ -0,0 +1,29 @@
+package com.soundcu.ofac.services;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Directories holding data that has to outlive a restart, such as job checkpoints or the
+ * subjects to rescreen. The temporary directory is wiped on many container and host restarts,
+ * so it is never accepted for them.
+ */
+final class DataDirectory {
+    private DataDirectory() {
+    }
+
+    /**
+     * The configured directory as an absolute path.
+     *
+     * @param property name of the property that configured it, for the error message
+     * @param value    configured directory
+     * @return Path
+     * @throws IllegalStateException if the directory is under {@code java.io.tmpdir}
+     */
+    static Path of(String property, String value) {
+        Path dir = Paths.get(value).toAbsolutePath().normalize();
+        if (dir.startsWith(Paths.get(System.getProperty("java.io.tmpdir")).toAbsolutePath().normalize()))
+            throw new IllegalStateException(property + " must not be under java.io.tmpdir: " + dir);
+        return dir;
+    }
+}
@@ -3,46 +3,48 @@ package com.soundcu.ofac.services;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.soundcu.ofac.model.Entry;
 import com.soundcu.ofac.model.SourceMetaData;
+import com.soundcu.ofac.search.ListSnapshot;
 import lombok.extern.slf4j.Slf4j;
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
-import com.fasterxml.jackson.core.JsonProcessingException;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.net.http.HttpResponse.BodyHandlers;
-import java.util.Arrays;
 import java.util.List;
-import java.io.IOException;
 import java.io.InputStream;
-import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.PostConstruct;
 
 @Service
 @Slf4j
 public class EntryBuilder {
-  private static final ObjectMapper mapper = new ObjectMapper();
-  private static final String RESULTS = "results";
-  private static final String SOURCES = "sources_used";
-
   @Value("${entries.host}")
   private String entriesHost;
 
   @Value("${entries.local}")
   private String entriesLocal;
 
-  private List<Entry> entries;
-  private List<SourceMetaData> sources;
+  @Value("${entries.max-bytes}")
+  private long entriesMaxBytes;
+
+  @Autowired
+  private ApplicationEventPublisher events;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  private final AtomicReference<ListSnapshot> snapshot = new AtomicReference<>();
+  private volatile long lastReloadMillis;
+  private ListFetcher fetcher;
 
   @PostConstruct
   public void init() {
+      fetcher = new ListFetcher(
+          HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build(), entriesMaxBytes); // follow redirects
       this.fetchEntries();
   }
 
@@ -52,7 +54,7 @@ public class EntryBuilder {
    */
   @Scheduled(fixedRate = 60 * 60 * 1000, initialDelay = 10 * 60 * 1000)
   public void fetchEntries() {
-    if ( entries == null ) {
+    if ( snapshot.get() == null ) {
       this.fetchEntries(entriesLocal);
     } else {
       this.fetchEntries(entriesHost);
@@ -65,30 +67,31 @@ public class EntryBuilder {
 
   public void fetchEntries(String source) {
     if ( source.startsWith("http") ) {
-      HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NORMAL).build(); // follow redirects
-      HttpRequest request = HttpRequest.newBuilder(URI.create(source))
-          .header("Accept", "application/json")
-          .build();
       try {
         logger.info("Starting fetching entries from " + source);
-        HttpResponse<String> response = client.send(request, BodyHandlers.ofString());
-        if (response.statusCode() != 200) {
-          logger.error("error fetching entries. Status code:: " + response.statusCode());
+        ListSnapshot current = snapshot.get();
+        ListFetcher.Fetched fetched = fetcher.fetch(URI.create(source), current == null ? null : current.getVersion());
+        if (fetched == null)
           return;
+
+        try (InputStream body = fetched.open()) {
+          logger.info("Finished fetching entries");
+          this.readEntriesFromSource(body);
+          fetcher.accept(fetched);
+        } finally {
+          fetched.discard();
         }
-        logger.info("Finished fetching entries");
-        this.readEntriesFromSource(response.body());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
       } catch (Exception e) {
         logger.error("Exception#fetchEntries ", e);
       }
     } else if ( source.startsWith("/") ) {
-      try {
-        InputStream is = this.getClass().getResourceAsStream(source);
+      try (InputStream is = this.getClass().getResourceAsStream(source)) {
         if (is == null) {
           throw new IOException("Resource not found");
         }
-        String entriesBody = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-        this.readEntriesFromSource(entriesBody);
+        this.readEntriesFromSource(is);
       } catch (Exception e) {
         logger.error("Exception#fetchEntries ", e);
       }
@@ -97,24 +100,63 @@ public class EntryBuilder {
     }
   }
 
-  protected void readEntriesFromSource(String entriesBody) throws IOException, JsonProcessingException  {
+  /**
+   * Streams the list document straight into a new snapshot and publishes it.
+   */
+  protected void readEntriesFromSource(InputStream entriesBody) throws IOException {
     logger.info("Starting JSON mapping");
-    JSONObject entriesObj = new JSONObject(entriesBody);
-    JSONArray array = entriesObj.getJSONArray(RESULTS);
-    entries = Arrays.asList(mapper.readValue(array.toString(), Entry[].class));
-    array = entriesObj.getJSONArray(SOURCES);
-    sources = Arrays.asList(mapper.readValue(array.toString(), SourceMetaData[].class));
-    logger.info("Finished JSON mapping");
+    long start = System.nanoTime();
+    ListSnapshot next = new ListReader(entriesMaxBytes, objectMapper).read(entriesBody);
+    lastReloadMillis = (System.nanoTime() - start) / 1_000_000;
+    publish(next);
   }
-  public synchronized List<Entry> getEntries() {
-    if (entries == null)
+
+  /**
+   * Makes a fully built snapshot visible to every following request in a single swap, then
+   * announces the reload.
+   */
+  private void publish(ListSnapshot next) {
+    ListSnapshot previous = snapshot.getAndSet(next);
+    logger.info("Published list version " + next.getVersion() + " with " + next.getEntries().size() + " entries, "
+        + next.getGrams().variantCount() + " names, " + next.getJsonSize() / 1024 + " KiB of entry JSON"
+        + (previous == null ? "" : ", replacing version " + previous.getVersion()));
+    events.publishEvent(new ListReloadedEvent(previous, next));
+  }
+
+  /**
+   * The current list and its indexes. Callers should read it once per request and use that
+   * snapshot throughout, so a reload in between cannot mix two lists.
+   */
+  public ListSnapshot getSnapshot() {
+    ListSnapshot current = snapshot.get();
+    if (current == null) {
       fetchEntries();
-    return entries;
+      current = snapshot.get();
+    }
+    return current;
+  }
+
+  /**
+   * The current list without fetching one when none is loaded yet, for metrics.
+   */
+  ListSnapshot getLoadedSnapshot() {
+    return snapshot.get();
+  }
+
+  /**
+   * How long reading and indexing the last published list took.
+   */
+  long getLastReloadMillis() {
+    return lastReloadMillis;
+  }
+
+  public List<Entry> getEntries() {
+    ListSnapshot current = getSnapshot();
+    return current == null ? null : current.getEntries();
   }
 
   public List<SourceMetaData> getSourceData() {
-    if (sources == null)
-      fetchEntries();
-    return sources;
+    ListSnapshot current = getSnapshot();
+    return current == null ? null : current.getSources();
   }
 }
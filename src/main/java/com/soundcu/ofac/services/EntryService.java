@@ -1,33 +1,111 @@
 package com.soundcu.ofac.services;
 
-import com.soundcu.ofac.model.Entry;
-import me.xdrop.fuzzywuzzy.FuzzySearch;
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.search.BitParallelScorer;
+import com.soundcu.ofac.search.CandidateScores;
+import com.soundcu.ofac.search.FieldIndex;
+import com.soundcu.ofac.search.GramIndex;
+import com.soundcu.ofac.search.IndexedEntry;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.NameForm;
+import com.soundcu.ofac.search.NameIndex;
+import com.soundcu.ofac.search.NameScorer;
+import com.soundcu.ofac.search.ScreeningQuery;
+import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Arrays;
-import java.util.Date;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.soundcu.ofac.search.ScreeningQuery.ADDRESS;
+import static com.soundcu.ofac.search.ScreeningQuery.BIRTH_DATE;
+import static com.soundcu.ofac.search.ScreeningQuery.ID;
+import static com.soundcu.ofac.search.ScreeningQuery.NAME;
+import static com.soundcu.ofac.search.ScreeningQuery.TAX_ID;
 
 @Service
+@Slf4j
 public class EntryService {
-    private static final String ADDRESS = "address";
-    private static final String BIRTH_DATE = "birthdate";
-    private static final String CITY = "city";
-    private static final String COUNTRY = "country";
-    private static final String ID = "id_number";
-    private static final String NAME = "name";
-    private static final String POSTAL_CODE = "postal_code";
-    private static final String TAX_ID = "ssn";
-    private static final String STATE = "state";
+    private static final int PERFECT_SCORE = 100;
+
+    /**
+     * Rank of an exact match on a secondary field, above any name score.
+     */
+    private static final int FIELD_MATCH_RANK = PERFECT_SCORE + 1;
 
     @Autowired
     private EntryBuilder entryBuilder;
 
+    @Autowired
+    private SearchMetrics metrics;
+
+    @Value("${search.scorer}")
+    private String engine;
+
+    @Value("${search.vector}")
+    private boolean vector;
+
+    @Value("${search.parallel.enabled}")
+    private boolean parallel;
+
+    @Value("${search.parallel.threads}")
+    private int parallelThreads;
+
+    @Value("${search.parallel.min-candidates}")
+    private int parallelMinCandidates;
+
+    @Value("${search.parallel.chunk-entries}")
+    private int chunkEntries;
+
+    private NameScorer scorer;
+
+    /**
+     * Runs the name scans of expensive searches, bounded and apart from the common pool so that
+     * parallel searches cannot starve anything else running on it.
+     */
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        scorer = NameScorer.of(engine, vector);
+        logger.info("Scoring names with " + scorer.getClass().getSimpleName());
+        if (vector && scorer == BitParallelScorer.INSTANCE)
+            logger.warn("search.vector is set but VectorScorer was not built (-P vector) or the jdk.incubator.vector module is not added, scoring one name at a time");
+
+        if (parallel) {
+            int size = parallelThreads > 0 ? parallelThreads : Runtime.getRuntime().availableProcessors();
+            AtomicInteger count = new AtomicInteger();
+            pool = new ForkJoinPool(size, (forkJoinPool) -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+                thread.setName("search-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }, null, false);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdownNow();
+    }
+
     /**
      * Filters our search results based on type (entity, individual, or vessel).
      *
@@ -36,200 +114,410 @@ public class EntryService {
      * @param type         type
      * @return List
      */
-    public List<Entry> filterByType(int minimumScore, JSONObject entity, String type) {
-        return search(minimumScore, entity).stream().filter((entry) ->
-        {
-            if (entry.getType() == null)
-                return false;
-
-            return entry.getType().equalsIgnoreCase(type);
-        }).collect(Collectors.toList());
+    public List<Match> filterByType(int minimumScore, JSONObject entity, String type) {
+        return filterByType(entryBuilder.getSnapshot(), minimumScore, ScreeningQuery.of(entity), type);
     }
 
     /**
-     * Transforms a String to a Date.
+     * Filters our search results of the given list snapshot based on type (entity, individual, or vessel).
      *
-     * @param date
-     * @return Date
+     * @param snapshot     snapshot
+     * @param minimumScore score
+     * @param query        query
+     * @param type         type
+     * @return List
      */
-    private Date parseDate(String date) {
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
-        try {
-            return format.parse(date);
-        } catch (ParseException e) {
-            return new Date();
-        }
+    public List<Match> filterByType(ListSnapshot snapshot, int minimumScore, ScreeningQuery query, String type) {
+        return search(snapshot, minimumScore, query, null, type, 0);
     }
 
     /**
-     * Checks whether or not an entity is active on the list.
+     * In addition to fuzzy matching on the name, looks up the entries whose address, birth date
+     * or ID number equal the request's.
      *
-     * @param entry
-     * @return boolean
+     * @param fields
+     * @param query
+     * @return Map of request field to entry positions
      */
-    private boolean isExcluded(Entry entry) {
-        if (entry.getEnd_date() == null && entry.getStart_date() == null)
-            return false;
+    private Map<String, BitSet> matchOnSecondaryFields(FieldIndex fields, ScreeningQuery query) {
+        Map<String, BitSet> matches = new LinkedHashMap<>();
+        if (query.getAddressKey() != null)
+            fields.matchAddress(query.getAddressKey(), matches.computeIfAbsent(ADDRESS, (field) -> new BitSet()));
+
+        if (query.getBirthDate() != null)
+            fields.matchDateOfBirth(query.getBirthDate(), matches.computeIfAbsent(BIRTH_DATE, (field) -> new BitSet()));
 
-        Date today = new Date();
-        if (entry.getEnd_date() != null && today.after(parseDate(entry.getEnd_date())))
-            return true;
+        if (query.getIdNumber() != null)
+            fields.matchId(query.getIdNumber(), matches.computeIfAbsent(ID, (field) -> new BitSet()));
 
-        if (entry.getStart_date() != null && today.before(parseDate(entry.getStart_date())))
-            return true;
+        if (query.getTaxId() != null)
+            fields.matchId(query.getTaxId(), matches.computeIfAbsent(TAX_ID, (field) -> new BitSet()));
 
-        return false;
+        return matches;
     }
 
     /**
-     * In addition to fuzzy matching on the name, check to see if other fields are equal.
+     * Searches the list for a fuzzy name match above the given threshold or an exact match
+     * on secondary fields (address, birth date, or ID number). Only the names the trigram
+     * index cannot rule out are fuzzy scored; secondary fields are hash lookups.
+     * Shared entries are never modified: every match is a new object owned by the caller.
      *
-     * @param entry
-     * @param entity
-     * @return boolean
+     * @param minimumScore score
+     * @param entity       entity
+     * @return List list
      */
-    private boolean isMatch(Entry entry, JSONObject entity) {
-        boolean isMatch = false;
-        if (isMatchOnAddress(entry, entity))
-            isMatch = true;
+    public List<Match> search(int minimumScore, JSONObject entity) {
+        return search(entryBuilder.getSnapshot(), minimumScore, ScreeningQuery.of(entity));
+    }
 
-        if (isMatchOnBirthday(entry, entity))
-            isMatch = true;
+    /**
+     * Searches the given list snapshot, see {@link #search(int, JSONObject)}.
+     *
+     * @param snapshot     snapshot
+     * @param minimumScore score
+     * @param query        query
+     * @return List list
+     */
+    public List<Match> search(ListSnapshot snapshot, int minimumScore, ScreeningQuery query) {
+        return search(snapshot, minimumScore, query, null);
+    }
 
-        if (isMatchOnId(entry, entity))
-            isMatch = true;
+    /**
+     * Searches only the given entries of the snapshot, such as the entries a list reload added
+     * or changed. Every name of those entries is scored directly instead of going through the
+     * trigram index, which is cheaper for a handful of entries.
+     *
+     * @param snapshot     snapshot
+     * @param minimumScore score
+     * @param query        query
+     * @param within       positions to search, or null for the whole list
+     * @return List list
+     */
+    public List<Match> search(ListSnapshot snapshot, int minimumScore, ScreeningQuery query, BitSet within) {
+        return search(snapshot, minimumScore, query, within, null, 0);
+    }
 
-        return isMatch;
+    /**
+     * Searches the snapshot and ranks the matches, see
+     * {@link #search(ListSnapshot, int, ScreeningQuery, BitSet, String, Collection, int)}, in every source.
+     */
+    public List<Match> search(ListSnapshot snapshot, int minimumScore, ScreeningQuery query, BitSet within, String type,
+                              int maxResults) {
+        return search(snapshot, minimumScore, query, within, type, null, maxResults);
     }
 
     /**
-     * Returns if request matches an entry's address.
+     * Searches the snapshot and ranks the matches: entries matching a secondary field first, even
+     * ahead of a perfect name score, then by name score, ties in list order. With
+     * {@code maxResults} set only the best ones are kept, and once that many are held the lowest
+     * of them becomes the threshold: names whose length bound cannot beat it are skipped without
+     * a score, and once no name score could displace it the scan stops. Names within the bound
+     * are still scored in full, and a scorer that scores all candidates up front gains nothing
+     * from the threshold. A typed search runs against the partition of that type only, and a
+     * source filter narrows the entries searched before any name is scored.
+     * When the trigram index leaves at least {@code search.parallel.min-candidates} names, they
+     * are scanned in chunks on the search pool and the chunk rankings merged, with the same result.
      *
-     * @param entry
-     * @param entity
-     * @return boolean
+     * @param snapshot     snapshot
+     * @param minimumScore score
+     * @param query        query
+     * @param within       positions to search, or null for the whole list
+     * @param type         entry type to keep, or null for all types
+     * @param sources      sources to keep, by name or short code, or null for all sources
+     * @param maxResults   most matches to return, or 0 for all of them
+     * @return List list
      */
-    private boolean isMatchOnAddress(Entry entry, JSONObject entity) {
-        if (!entity.has(ADDRESS) || !entity.has(CITY) || !entity.has(COUNTRY))
-            return false;
-        else if (!entity.has(POSTAL_CODE) || !entity.has(STATE))
-            return false;
-        else if (entry.getAddresses() == null)
-            return false;
-
-        return entry.getAddresses().stream().anyMatch((addr) ->
-        {
-            if (!addr.getAddress().equalsIgnoreCase(entity.getString(ADDRESS)))
-                return false;
+    public List<Match> search(ListSnapshot snapshot, int minimumScore, ScreeningQuery query, BitSet within, String type,
+                              Collection<String> sources, int maxResults) {
+        // positions in grams are local to the partition, every BitSet holds positions in the full list
+        GramIndex grams = type == null ? snapshot.getGrams() : snapshot.getPartitions().type(type);
+        NameIndex names = grams.getNames();
+        BitSet active = snapshot.getActive().today();
+        if (within != null || sources != null) {
+            active = (BitSet) active.clone();
+            if (within != null)
+                active.and(within);
+            if (sources != null)
+                active.and(snapshot.getPartitions().sources(sources));
+        }
+        Ranking ranking = new Ranking(minimumScore, maxResults);
+        NameForm name = query.getNameForm();
+        BitSet candidates = name == null || within != null ? null : grams.candidates(name, minimumScore);
+        CandidateScores scores = candidates == null ? null : scorer.scoreAll(grams, candidates, name, minimumScore);
+
+        LongAdder scored = new LongAdder();
+        Map<String, BitSet> secondary = matchOnSecondaryFields(snapshot.getFields(), query);
+        BitSet onFields = new BitSet();
+        for (BitSet positions : secondary.values()) {
+            positions.and(active);
+            onFields.or(positions);
+        }
+        for (int position = onFields.nextSetBit(0); position >= 0; position = onFields.nextSetBit(position + 1)) {
+            int local = names.indexOf(position);
+            if (local < 0)
+                continue;
+            NameMatch nameMatch = name == null ? null : matchOnName(local, grams, candidates, scores, name, minimumScore, scored);
+            ranking.offer(new Ranked(position, FIELD_MATCH_RANK, nameMatch));
+        }
 
-            if (!addr.getCity().equalsIgnoreCase(entity.getString(CITY)))
-                return false;
+        if (name != null) {
+            Scan scan = new Scan(grams, candidates, scores, name, active, onFields, scored);
+            if (isParallel(names, candidates))
+                ranking.addAll(pool.invoke(new ScanTask(scan, minimumScore, maxResults, 0, names.size())));
+            else
+                scan.run(0, names.size(), ranking);
+        }
+        if (candidates != null)
+            metrics.recordNames(grams.variantCount(), candidates.cardinality(), scores != null ? scores.getScored() : scored.sum());
+
+        List<IndexedEntry> entries = snapshot.getNames().getEntries();
+        List<Ranked> ranked = ranking.best();
+        List<Match> matches = new ArrayList<>(ranked.size());
+        for (Ranked match : ranked) {
+            List<String> fields = new ArrayList<>(1);
+            if (match.name != null)
+                fields.add(NAME);
+            for (Map.Entry<String, BitSet> field : secondary.entrySet()) {
+                if (field.getValue().get(match.position))
+                    fields.add(field.getKey());
+            }
 
-            if (!addr.getCountry().equalsIgnoreCase(entity.getString(COUNTRY)))
-                return false;
+            IndexedEntry entry = entries.get(match.position);
+            matches.add(match.name == null
+                    ? new Match(entry.getEntry(), entry.getJson(), null, null, fields)
+                    : new Match(entry.getEntry(), entry.getJson(), match.name.score, match.name.name.getOriginal(), fields));
+        }
+        return matches;
+    }
 
-            if (!addr.getPostal_code().equalsIgnoreCase(entity.getString(POSTAL_CODE)))
-                return false;
+    /**
+     * Whether to scan the names on the search pool: only when the trigram index leaves enough
+     * candidate names to be worth splitting, never for searches within a few given entries.
+     */
+    private boolean isParallel(NameIndex names, BitSet candidates) {
+        return pool != null && candidates != null && names.size() > chunkEntries
+                && candidates.cardinality() >= parallelMinCandidates;
+    }
 
-            if (!addr.getState().equalsIgnoreCase(entity.getString(STATE)))
-                return false;
+    /**
+     * The first entry of the slice from the given index on that is active.
+     */
+    private static int nextActive(NameIndex names, BitSet active, int local) {
+        if (local >= names.size())
+            return -1;
+        for (int position = active.nextSetBit(names.getEntries().get(local).getOrdinal()); position >= 0;
+             position = active.nextSetBit(position + 1)) {
+            int next = names.indexOf(position);
+            if (next >= 0)
+                return next;
+        }
+        return -1;
+    }
 
-            return true;
-        });
+    private static int nextCandidate(GramIndex grams, BitSet candidates, int position) {
+        int v = candidates.nextSetBit(grams.firstVariant(position));
+        return v < 0 ? -1 : grams.getEntry(v);
     }
 
     /**
-     * Returns if request matches an entry's birth date.
+     * Scores the query against the entry's candidate names (all of its names when candidates is
+     * null) and keeps the best score reaching the threshold; on equal scores the earlier name
+     * wins, in the order name, comma parts, alt names. Names whose length and token count
+     * cannot reach the threshold, or beat the best so far, are not scored.
      *
-     * @param entry
-     * @param entity
-     * @return boolean
+     * @param position
+     * @param grams
+     * @param candidates
+     * @param scores     candidate scores computed up front, or null
+     * @param query
+     * @param threshold
+     * @param scored     counts the names scored in full here, not those looked up in scores
+     * @return NameMatch or null
      */
-    private boolean isMatchOnBirthday(Entry entry, JSONObject entity) {
-        if (!entity.has(BIRTH_DATE) || entry.getDates_of_birth() == null)
-            return false;
+    private NameMatch matchOnName(int position, GramIndex grams, BitSet candidates, CandidateScores scores, NameForm query,
+                                  int threshold, LongAdder scored) {
+        int end = grams.firstVariant(position + 1);
+        NameMatch best = null;
+        for (int v = next(candidates, grams.firstVariant(position)); v >= 0 && v < end; v = next(candidates, v + 1)) {
+            NameForm name = grams.getVariant(v);
+            if (name.maxScore(query) < (best == null ? threshold : best.score + 1))
+                continue;
+
+            int score;
+            if (scores != null) {
+                score = scores.get(v);
+            } else {
+                score = scorer.score(name, query);
+                scored.increment();
+            }
+            if (score >= threshold && (best == null || score > best.score)) {
+                best = new NameMatch(name, score);
+                if (score == PERFECT_SCORE)
+                    break;
+            }
+        }
+        return best;
+    }
 
-        String entityDob = entity.getString(BIRTH_DATE);
-        return entry.getDates_of_birth().stream().anyMatch((dob) -> {
-            return dob.equals(entityDob);
-        });
+    private static int next(BitSet candidates, int v) {
+        return candidates == null ? v : candidates.nextSetBit(v);
     }
 
     /**
-     * Returns if request matches an entry's ID number.
-     *
-     * @param entry
-     * @param entity
-     * @return boolean
+     * The name scan of one search over a range of entries of its slice. Ranges can be scanned
+     * concurrently, each into its own ranking: an entry's match does not depend on any other entry.
      */
-    private boolean isMatchOnId(Entry entry, JSONObject entity) {
-        //if (!(entity.has(ID) && entity.has(TAX_ID)) || entry.getIds() == null) //Does it have to be id AND tax id???
-        if (!(entity.has(ID) || entity.has(TAX_ID)) || entry.getIds() == null)
-            return false;
+    private final class Scan {
+        private final GramIndex grams;
+        private final BitSet candidates;
+        private final CandidateScores scores;
+        private final NameForm query;
+        private final BitSet active;
+        private final BitSet onFields;
+        private final LongAdder scored;
+
+        private Scan(GramIndex grams, BitSet candidates, CandidateScores scores, NameForm query, BitSet active,
+                     BitSet onFields, LongAdder scored) {
+            this.grams = grams;
+            this.candidates = candidates;
+            this.scores = scores;
+            this.query = query;
+            this.active = active;
+            this.onFields = onFields;
+            this.scored = scored;
+        }
 
-        String entityId = entity.has(ID) ? entity.getString(ID).replaceAll("[^a-zA-Z0-9]", "") : null;
-        String taxId = entity.has(TAX_ID) ? entity.getString(TAX_ID).replaceAll("[^a-zA-Z0-9]", "") : null;
+        private void run(int from, int to, Ranking ranking) {
+            List<IndexedEntry> entries = grams.getNames().getEntries();
+            for (int local = next(from); local >= 0 && local < to; local = next(local + 1)) {
+                int position = entries.get(local).getOrdinal();
+                int threshold = ranking.threshold(position);
+                if (threshold > PERFECT_SCORE)
+                    break;
+
+                if (active.get(position) && !onFields.get(position)) {
+                    NameMatch nameMatch = matchOnName(local, grams, candidates, scores, query, threshold, scored);
+                    if (nameMatch != null)
+                        ranking.offer(new Ranked(position, nameMatch.score, nameMatch));
+                }
+            }
+        }
 
-        return entry.getIds().stream().anyMatch((id) ->
-        {
-            if (id.getNumber() == null)
-                return false;
+        private int next(int local) {
+            return candidates == null ? nextActive(grams.getNames(), active, local) : nextCandidate(grams, candidates, local);
+        }
+    }
+
+    /**
+     * Splits a scan in halves down to chunks of {@code search.parallel.chunk-entries} entries,
+     * which keep the names and postings of neighbouring entries together, and merges the rankings.
+     */
+    private final class ScanTask extends RecursiveTask<Ranking> {
+        private final Scan scan;
+        private final int minimumScore;
+        private final int maxResults;
+        private final int from;
+        private final int to;
+
+        private ScanTask(Scan scan, int minimumScore, int maxResults, int from, int to) {
+            this.scan = scan;
+            this.minimumScore = minimumScore;
+            this.maxResults = maxResults;
+            this.from = from;
+            this.to = to;
+        }
 
-            String idNumber = id.getNumber().replaceAll("[^a-zA-Z0-9]", "");
-            return idNumber.equalsIgnoreCase(entityId) || idNumber.equalsIgnoreCase(taxId);
-        });
+        @Override
+        protected Ranking compute() {
+            if (to - from <= chunkEntries) {
+                Ranking ranking = new Ranking(minimumScore, maxResults);
+                scan.run(from, to, ranking);
+                return ranking;
+            }
+
+            int middle = (from + to) >>> 1;
+            ScanTask first = new ScanTask(scan, minimumScore, maxResults, from, middle);
+            first.fork();
+            Ranking second = new ScanTask(scan, minimumScore, maxResults, middle, to).compute();
+            Ranking ranking = first.join();
+            ranking.addAll(second);
+            return ranking;
+        }
+    }
+
+    private static final class Ranked {
+        private final int position;
+        private final int rank;
+        private final NameMatch name;
+
+        private Ranked(int position, int rank, NameMatch name) {
+            this.position = position;
+            this.rank = rank;
+            this.name = name;
+        }
     }
 
     /**
-     * Searches the list for a fuzzy name match above the given threshold or an exact match
-     * on secondary fields (address, birth date, or ID number).
-     *
-     * @param minimumScore score
-     * @param entity       entity
-     * @return List list
+     * The matches found so far; with a limit, a heap holding the best ones with the worst on top.
      */
-    public List<Entry> search(int minimumScore, JSONObject entity) {
-        List<Entry> entries = entryBuilder.getEntries();
-        return entries.stream().filter((entry) ->
-        {
-            if (isExcluded(entry))
-                return false;
-
-            boolean scoreMatch = false;
-
-            if (entity.has(NAME)) {
-                int score = FuzzySearch.tokenSortRatio(entry.getName(), entity.getString(NAME));
-
-                if (score >= minimumScore) {
-                    entry.setScore(score);
-                    scoreMatch = true;
-                } else {
-                    List<String> names = Arrays.asList(entry.getName().split(","));
-                    int j = 0;
-                    while(names != null && !scoreMatch && j < names.size()) {
-                        score = FuzzySearch.tokenSortRatio(names.get(j), entity.getString(NAME));
-                        if (score >= minimumScore) {
-                            entry.setScore(score);
-                            scoreMatch = true;
-                        }
-                        j++;
-                    }
-                                        
-                    if (scoreMatch == false) {
-                        List<String> altNames = entry.getAlt_names();
-                        int i = 0;
-                        while (altNames != null && !scoreMatch && i < altNames.size()) {
-                            score = FuzzySearch.tokenSortRatio(altNames.get(i), entity.getString(NAME));
-                            if (score >= minimumScore) {
-                                entry.setScore(score);
-                                scoreMatch = true;
-                            }
-                            i++;
-                        }
-                    }
-                }
+    private static final class Ranking {
+        private static final Comparator<Ranked> BEST_FIRST = Comparator.comparingInt((Ranked ranked) -> -ranked.rank)
+                .thenComparingInt((ranked) -> ranked.position);
+
+        private final int minimumScore;
+        private final int limit;
+        private final PriorityQueue<Ranked> heap;
+        private final List<Ranked> all;
+
+        private Ranking(int minimumScore, int limit) {
+            this.minimumScore = minimumScore;
+            this.limit = limit;
+            this.heap = limit > 0 ? new PriorityQueue<>(limit + 1, BEST_FIRST.reversed()) : null;
+            this.all = limit > 0 ? null : new ArrayList<>();
+        }
+
+        private void addAll(Ranking other) {
+            for (Ranked ranked : other.heap != null ? other.heap : other.all)
+                offer(ranked);
+        }
+
+        private void offer(Ranked ranked) {
+            if (heap == null) {
+                all.add(ranked);
+                return;
             }
-            return scoreMatch || isMatch(entry, entity);
-        }).collect(Collectors.toList());
+            heap.add(ranked);
+            if (heap.size() > limit)
+                heap.poll();
+        }
+
+        /**
+         * The score the name of the entry at the given position needs to make the results: it has
+         * to beat the current last result when that comes earlier in the list, and only tie it when
+         * it comes later, such as a secondary field match held before the scan. The scan visits
+         * positions in list order, so once the threshold passes a perfect score it stays there.
+         */
+        private int threshold(int position) {
+            if (heap == null || heap.size() < limit)
+                return minimumScore;
+            Ranked worst = heap.peek();
+            return Math.max(minimumScore, worst.position > position ? worst.rank : worst.rank + 1);
+        }
+
+        private List<Ranked> best() {
+            List<Ranked> best = new ArrayList<>(heap != null ? heap : all);
+            best.sort(BEST_FIRST);
+            return best;
+        }
+    }
+
+    private static final class NameMatch {
+        private final NameForm name;
+        private final int score;
+
+        private NameMatch(NameForm name, int score) {
+            this.name = name;
+            this.score = score;
+        }
     }
 }
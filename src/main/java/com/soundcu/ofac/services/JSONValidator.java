@@ -2,6 +2,7 @@ package com.soundcu.ofac.services;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 import org.everit.json.schema.Schema;
 import org.everit.json.schema.ValidationException;
@@ -18,28 +19,45 @@ import com.soundcu.ofac.exceptions.ServiceException;
 @Service
 public class JSONValidator
 {
-	public boolean isValid(String payload)
+	private final Schema schema = loadSchema();
+	
+	/**
+	 * Loads and compiles the request schema once; a compiled schema is immutable and shared by all requests.
+	 */
+	private static Schema loadSchema()
 	{
 		try (InputStream inputStream = JSONValidator.class.getResourceAsStream("/schemas/request.json"))
 		{
-			JSONObject entity = new JSONObject(payload);
-			JSONObject rawSchema = new JSONObject(new JSONTokener(inputStream));
-			Schema schema = SchemaLoader.load(rawSchema);
-			schema.validate(entity);
-			return true;
-
+			return SchemaLoader.load(new JSONObject(new JSONTokener(new String(inputStream.readAllBytes(), StandardCharsets.UTF_8))));
 		}
-		catch (ValidationException e)
+		catch (IOException e)
 		{
-			throw new BadRequestException(144, e.getMessage());
+			throw new ServiceException(500, HttpStatus.INTERNAL_SERVER_ERROR, "Failed to validate request payload.");
+		}
+	}
+	
+	public boolean isValid(String payload)
+	{
+		try
+		{
+			return isValid(new JSONObject(payload));
 		}
 		catch (JSONException e)
 		{
 			throw new BadRequestException(141, e.getMessage());
 		}
-		catch (IOException e)
+	}
+	
+	public boolean isValid(JSONObject entity)
+	{
+		try
 		{
-			throw new ServiceException(500, HttpStatus.INTERNAL_SERVER_ERROR, "Failed to validate request payload.");
+			schema.validate(entity);
+			return true;
+		}
+		catch (ValidationException e)
+		{
+			throw new BadRequestException(144, e.getMessage());
 		}
 	}
 }
@@ -0,0 +1,364 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.soundcu.ofac.exceptions.BadRequestException;
+import com.soundcu.ofac.exceptions.ServiceException;
+import com.soundcu.ofac.model.BatchResult;
+import com.soundcu.ofac.model.JobStatus;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.ServiceError;
+import com.soundcu.ofac.search.ListSnapshot;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Bulk screening jobs. An upload is spooled to {@code jobs.dir/<id>/}, then screened in chunks
+ * of {@code jobs.checkpoint-rows} rows on a fixed worker pool, one job at a time. After every
+ * chunk the hits are appended to the result file, synced, and the job status is written as a
+ * checkpoint; a restart truncates the result file to the checkpoint and carries on from there.
+ * A job screens every row against the list version it started with; if that version is gone
+ * when it resumes, it starts over against the current one. Checkpoints only help if they outlive
+ * the restart, so jobs are refused until {@code jobs.dir} is set, and never kept under the
+ * temporary directory.
+ */
+@Service
+@Slf4j
+public class JobService {
+    private static final String INPUT = "input";
+    private static final String RESULT = "result.ndjson";
+    private static final String STATUS = "job.json";
+    private static final MediaType TEXT_CSV = MediaType.valueOf("text/csv");
+
+    @Value("${jobs.dir}")
+    private String directory;
+
+    @Value("${jobs.threads}")
+    private int threads;
+
+    @Value("${jobs.checkpoint-rows}")
+    private int checkpointRows;
+
+    @Value("${jobs.max-bytes}")
+    private long maxBytes;
+
+    @Autowired
+    private EntryBuilder entryBuilder;
+
+    @Autowired
+    private RequestDecoder decoder;
+
+    @Autowired
+    private ScreeningService screeningService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, JobStatus> jobs = new ConcurrentHashMap<>();
+    private Path root;
+    private ExecutorService runner;
+    private ExecutorService workers;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (directory == null || directory.isBlank()) {
+            logger.warn("jobs.dir is not set, bulk screening jobs are refused");
+            return;
+        }
+
+        root = Files.createDirectories(DataDirectory.of("jobs.dir", directory));
+        runner = Executors.newSingleThreadExecutor((task) -> {
+            Thread thread = new Thread(task, "job-runner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        workers = Executors.newFixedThreadPool(size, (task) -> {
+            Thread thread = new Thread(task, "job-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        resume();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (root == null)
+            return;
+        runner.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    /**
+     * Picks up the jobs found on disk and queues the unfinished ones again, oldest first.
+     */
+    void resume() throws IOException {
+        List<JobStatus> unfinished = new ArrayList<>();
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(root, Files::isDirectory)) {
+            for (Path dir : dirs) {
+                Path file = dir.resolve(STATUS);
+                if (!Files.exists(file) || jobs.containsKey(dir.getFileName().toString()))
+                    continue;
+
+                try {
+                    JobStatus status = objectMapper.readValue(file.toFile(), JobStatus.class);
+                    jobs.put(status.getId(), status);
+                    if (status.getState() == JobStatus.State.QUEUED || status.getState() == JobStatus.State.RUNNING)
+                        unfinished.add(status);
+                } catch (IOException e) {
+                    logger.error("Skipping unreadable job checkpoint " + file, e);
+                }
+            }
+        }
+
+        unfinished.sort(Comparator.comparing(JobStatus::getSubmitted_at));
+        for (JobStatus status : unfinished) {
+            logger.info("Resuming job " + status.getId() + " at row " + status.getRows_done());
+            runner.submit(() -> run(copy(status)));
+        }
+    }
+
+    /**
+     * Spools an upload to disk and queues it.
+     *
+     * @param contentType  text/csv or application/x-ndjson
+     * @param in           upload
+     * @param minimumScore score
+     * @param type         entry type to keep, or null for all types
+     * @param requestor    requestor
+     * @return JobStatus
+     * @throws IOException if the upload cannot be spooled
+     */
+    public JobStatus submit(String contentType, InputStream in, int minimumScore, String type, Requestor requestor)
+            throws IOException {
+        if (root == null)
+            throw new ServiceException(503, HttpStatus.SERVICE_UNAVAILABLE, "Bulk screening jobs are not configured.");
+
+        RowReader.Format format = format(contentType);
+        String id = UUID.randomUUID().toString();
+        Path dir = Files.createDirectory(root.resolve(id));
+        JobStatus status = new JobStatus();
+        try {
+            spool(in, dir.resolve(INPUT));
+            try (RowReader rows = RowReader.open(dir.resolve(INPUT), format)) {
+                status.setRows_total(rows.count());
+            }
+        } catch (IOException | RuntimeException e) {
+            delete(dir);
+            throw e;
+        }
+
+        status.setId(id);
+        status.setState(JobStatus.State.QUEUED);
+        status.setFormat(format.name());
+        status.setMinimum_score(minimumScore);
+        status.setType(type);
+        status.setSearch_performed_by(requestor);
+        status.setSubmitted_at(Instant.now().toString());
+        checkpoint(status);
+        runner.submit(() -> run(copy(status)));
+        return status;
+    }
+
+    /**
+     * The status as of the job's last checkpoint.
+     *
+     * @param id job id
+     * @return JobStatus
+     */
+    public JobStatus getStatus(String id) {
+        JobStatus status = jobs.get(id);
+        if (status == null)
+            throw new ServiceException(404, HttpStatus.NOT_FOUND, "Job " + id + " not found.");
+        return status;
+    }
+
+    /**
+     * The result file of a completed job: one line per row that matched or failed.
+     *
+     * @param id job id
+     * @return Path
+     */
+    public Path getResult(String id) {
+        JobStatus status = getStatus(id);
+        if (status.getState() != JobStatus.State.COMPLETED)
+            throw new ServiceException(409, HttpStatus.CONFLICT, "Job " + id + " is " + status.getState() + ".");
+        return root.resolve(id).resolve(RESULT);
+    }
+
+    Path getDirectory(String id) {
+        return root.resolve(id);
+    }
+
+    private void run(JobStatus status) {
+        Path dir = root.resolve(status.getId());
+        ListSnapshot snapshot = entryBuilder.getSnapshot();
+        if (status.getRows_done() > 0 && !snapshot.getVersion().equals(status.getList_version())) {
+            logger.info("Job " + status.getId() + " started on list version " + status.getList_version()
+                    + ", restarting on " + snapshot.getVersion());
+            status.setRows_done(0);
+            status.setHits(0);
+            status.setErrors(0);
+            status.setResult_bytes(0);
+        }
+        status.setList_version(snapshot.getVersion());
+        status.setState(JobStatus.State.RUNNING);
+        status.setStarted_at(Instant.now().toString());
+        status.setMessage(null);
+
+        long start = System.nanoTime();
+        long resumedAt = status.getRows_done();
+        ObjectWriter writer = objectMapper.writerFor(BatchResult.class);
+        try (FileChannel result = FileChannel.open(dir.resolve(RESULT), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             RowReader rows = RowReader.open(dir.resolve(INPUT), RowReader.Format.valueOf(status.getFormat()))) {
+            result.truncate(status.getResult_bytes());
+            result.position(status.getResult_bytes());
+            rows.skip(status.getRows_done());
+            checkpoint(status);
+
+            List<RowReader.Row> chunk;
+            while (!(chunk = rows.next(checkpointRows)).isEmpty()) {
+                List<Future<BatchResult>> results = new ArrayList<>(chunk.size());
+                for (RowReader.Row row : chunk)
+                    results.add(workers.submit(() -> screen(row, snapshot, status)));
+
+                ByteArrayOutputStream lines = new ByteArrayOutputStream();
+                for (Future<BatchResult> future : results) {
+                    BatchResult line = future.get();
+                    if (line.getError() != null)
+                        status.setErrors(status.getErrors() + 1);
+                    else if (line.getResponse().getConfirmed_match())
+                        status.setHits(status.getHits() + 1);
+                    else
+                        continue;
+                    lines.write(writer.writeValueAsBytes(line));
+                    lines.write('\n');
+                }
+                result.write(ByteBuffer.wrap(lines.toByteArray()));
+                result.force(false);
+
+                status.setRows_done(status.getRows_done() + chunk.size());
+                status.setResult_bytes(result.position());
+                status.setRows_per_second(rate(status.getRows_done() - resumedAt, start));
+                checkpoint(status);
+            }
+
+            status.setState(JobStatus.State.COMPLETED);
+            status.setFinished_at(Instant.now().toString());
+            checkpoint(status);
+            logger.info("Job " + status.getId() + " screened " + status.getRows_done() + " rows, " + status.getHits()
+                    + " hits, " + status.getErrors() + " errors, " + (long) status.getRows_per_second() + " rows/s");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.info("Job " + status.getId() + " paused at row " + status.getRows_done());
+        } catch (IOException | ExecutionException | RuntimeException e) {
+            logger.error("Job " + status.getId() + " failed at row " + status.getRows_done(), e);
+            status.setState(JobStatus.State.FAILED);
+            status.setMessage(e.getMessage());
+            status.setFinished_at(Instant.now().toString());
+            try {
+                checkpoint(status);
+            } catch (IOException checkpointFailure) {
+                logger.error("Could not record failure of job " + status.getId(), checkpointFailure);
+            }
+        }
+    }
+
+    private BatchResult screen(RowReader.Row row, ListSnapshot snapshot, JobStatus status) {
+        try {
+            if (row.error != null)
+                throw new BadRequestException(141, row.error);
+
+            return new BatchResult(row.id, screeningService.screenRow(snapshot, decoder.decode(row.entity),
+                    status.getMinimum_score(), status.getType(), null, 0, status.getSearch_performed_by()));
+        } catch (ServiceException e) {
+            return new BatchResult(row.id, new ServiceError(e.getCode(), e.getStatus(), e.getMessage()));
+        } catch (RuntimeException e) {
+            logger.error("Failed to screen row " + row.id + " of job " + status.getId(), e);
+            return new BatchResult(row.id, new ServiceError(500, HttpStatus.INTERNAL_SERVER_ERROR, e.getMessage()));
+        }
+    }
+
+    /**
+     * Writes the status next to the job's files and publishes a copy of it, so readers only
+     * ever see checkpointed progress.
+     */
+    private void checkpoint(JobStatus status) throws IOException {
+        Path dir = root.resolve(status.getId());
+        Path temp = dir.resolve(STATUS + ".tmp");
+        objectMapper.writeValue(temp.toFile(), status);
+        Files.move(temp, dir.resolve(STATUS), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        jobs.put(status.getId(), copy(status));
+    }
+
+    private JobStatus copy(JobStatus status) {
+        return objectMapper.convertValue(status, JobStatus.class);
+    }
+
+    private void spool(InputStream in, Path file) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        try (OutputStream out = Files.newOutputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                total += n;
+                if (total > maxBytes)
+                    throw new BadRequestException(144, "Upload exceeds " + maxBytes + " bytes.");
+                out.write(buffer, 0, n);
+            }
+        }
+    }
+
+    private static RowReader.Format format(String contentType) {
+        MediaType type = MediaType.parseMediaType(contentType);
+        if (TEXT_CSV.isCompatibleWith(type))
+            return RowReader.Format.CSV;
+        if (MediaType.APPLICATION_NDJSON.isCompatibleWith(type))
+            return RowReader.Format.NDJSON;
+        throw new BadRequestException(141, "Jobs accept text/csv or application/x-ndjson uploads.");
+    }
+
+    private static double rate(long rows, long start) {
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return seconds > 0 ? Math.round(rows / seconds * 10) / 10.0 : 0;
+    }
+
+    private static void delete(Path dir) throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator)
+                Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.soundcu.ofac.services;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Downloads the upstream list only when it changed. Requests are conditional on the validators of
+ * the last accepted download and ask for gzip; a full download whose content hashes to the
+ * version already loaded is dropped as well. The decompressed document is spooled up to
+ * {@code entries.max-bytes}, so a small compressed body cannot fill the disk.
+ */
+@Slf4j
+class ListFetcher {
+  private final HttpClient client;
+  private final long maxBytes;
+
+  private String etag;
+  private String lastModified;
+
+  ListFetcher(HttpClient client, long maxBytes) {
+    this.client = client;
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Fetches the document into a spool file.
+   *
+   * @param source         source
+   * @param currentVersion version of the list currently loaded, or null
+   * @return the changed document, or null when the upstream list did not change
+   */
+  Fetched fetch(URI source, String currentVersion) throws IOException, InterruptedException {
+    HttpRequest.Builder request = HttpRequest.newBuilder(source)
+        .header("Accept", "application/json")
+        .header("Accept-Encoding", "gzip");
+    if (etag != null)
+      request.header("If-None-Match", etag);
+    if (lastModified != null)
+      request.header("If-Modified-Since", lastModified);
+
+    HttpResponse<InputStream> response = client.send(request.build(), BodyHandlers.ofInputStream());
+    try (InputStream body = response.body()) {
+      if (response.statusCode() == 304) {
+        logger.info("Entries not modified since last fetch");
+        return null;
+      }
+      if (response.statusCode() != 200)
+        throw new IOException("error fetching entries. Status code:: " + response.statusCode());
+
+      boolean gzip = response.headers().firstValue("Content-Encoding").map("gzip"::equalsIgnoreCase).orElse(false);
+      Fetched fetched = spool(new ListReader.LimitedInputStream(gzip ? new GZIPInputStream(body) : body, maxBytes),
+          response.headers().firstValue("ETag").orElse(null),
+          response.headers().firstValue("Last-Modified").orElse(null));
+
+      if (fetched.getVersion().equals(currentVersion)) {
+        logger.info("Entries unchanged, content matches version " + currentVersion);
+        accept(fetched);
+        fetched.discard();
+        return null;
+      }
+      return fetched;
+    }
+  }
+
+  /**
+   * Remembers the validators of a download once it has been loaded, so the next fetch is conditional on it.
+   */
+  void accept(Fetched fetched) {
+    etag = fetched.etag;
+    lastModified = fetched.lastModified;
+  }
+
+  private static Fetched spool(InputStream body, String etag, String lastModified) throws IOException {
+    MessageDigest digest = ListReader.sha256();
+    Path file = Files.createTempFile("entries", ".json");
+    try (InputStream in = new DigestInputStream(body, digest); OutputStream out = Files.newOutputStream(file)) {
+      in.transferTo(out);
+    } catch (IOException e) {
+      Files.deleteIfExists(file);
+      throw e;
+    }
+    return new Fetched(file, ListReader.version(digest), etag, lastModified);
+  }
+
+  /**
+   * A downloaded, decompressed list document waiting to be loaded.
+   */
+  static final class Fetched {
+    private final Path file;
+    private final String version;
+    private final String etag;
+    private final String lastModified;
+
+    private Fetched(Path file, String version, String etag, String lastModified) {
+      this.file = file;
+      this.version = version;
+      this.etag = etag;
+      this.lastModified = lastModified;
+    }
+
+    String getVersion() {
+      return version;
+    }
+
+    InputStream open() throws IOException {
+      return Files.newInputStream(file);
+    }
+
+    void discard() {
+      try {
+        Files.deleteIfExists(file);
+      } catch (IOException e) {
+        logger.warn("could not delete " + file, e);
+      }
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.search.ListSnapshot;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Gauges of the loaded list and counters of the result cache, read when the registry is scraped.
+ * The list is looked up at scrape time: the registry is created while the first list loads, so
+ * the entry builder cannot be a dependency of it.
+ */
+@Component
+public class ListMetrics implements MeterBinder {
+    @Autowired
+    private ObjectProvider<EntryBuilder> entryBuilder;
+
+    @Autowired
+    private ResultCache cache;
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        gauge(registry, "ofac.list.entries", "Entries in the loaded list", null,
+                (snapshot) -> snapshot.getEntries().size());
+        gauge(registry, "ofac.list.active", "Entries of the loaded list active today", null,
+                (snapshot) -> snapshot.getActive().today().cardinality());
+        gauge(registry, "ofac.list.age", "Time since the loaded list was built", "seconds",
+                (snapshot) -> Duration.between(snapshot.getLoadedAt(), Instant.now()).toMillis() / 1000.0);
+        gauge(registry, "ofac.list.json.size", "Memory held by the pre-rendered JSON of the list entries", "bytes",
+                ListSnapshot::getJsonSize);
+        Gauge.builder("ofac.list.reload.duration", entryBuilder, (builder) -> builder.getObject().getLastReloadMillis() / 1000.0)
+                .description("How long the last list reload took to read and index")
+                .baseUnit("seconds")
+                .register(registry);
+
+        counter(registry, "hits", "Searches answered from the result cache", ResultCache::getHits);
+        counter(registry, "misses", "Searches the result cache had to run", ResultCache::getMisses);
+        counter(registry, "evictions", "Results evicted from the full result cache", ResultCache::getEvictions);
+        counter(registry, "coalesced", "Searches that waited for the same search already running", ResultCache::getCoalesced);
+        Gauge.builder("ofac.cache.size", cache, ResultCache::size)
+                .description("Results held by the result cache")
+                .register(registry);
+    }
+
+    private void gauge(MeterRegistry registry, String name, String description, String unit,
+                       ToDoubleFunction<ListSnapshot> value) {
+        Gauge.builder(name, entryBuilder, (builder) -> {
+                    ListSnapshot snapshot = builder.getObject().getLoadedSnapshot();
+                    return snapshot == null ? Double.NaN : value.applyAsDouble(snapshot);
+                })
+                .description(description)
+                .baseUnit(unit)
+                .register(registry);
+    }
+
+    private void counter(MeterRegistry registry, String result, String description, ToDoubleFunction<ResultCache> count) {
+        FunctionCounter.builder("ofac.cache.requests", cache, count)
+                .description(description)
+                .tag("result", result)
+                .register(registry);
+    }
+}
@@ -0,0 +1,177 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.SourceMetaData;
+import com.soundcu.ofac.search.ListSnapshot;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+
+/**
+ * Maps a consolidated screening list document into a {@link ListSnapshot} in a single streaming pass.
+ * Only the mapped entries are kept in memory, never the document itself.
+ */
+@Slf4j
+class ListReader {
+  private static final ObjectMapper mapper = new ObjectMapper();
+  private static final String RESULTS = "results";
+  private static final String SOURCES = "sources_used";
+
+  private final long maxBytes;
+  private final ObjectMapper objectMapper;
+
+  /**
+   * @param maxBytes     most bytes to read
+   * @param objectMapper the application's ObjectMapper, which renders the entries for responses
+   */
+  ListReader(long maxBytes, ObjectMapper objectMapper) {
+    this.maxBytes = maxBytes;
+    this.objectMapper = objectMapper;
+  }
+
+  /**
+   * Reads the whole document and builds its snapshot. The version is the hash of the bytes read.
+   */
+  ListSnapshot read(InputStream in) throws IOException {
+    HeapUsage heap = HeapUsage.start();
+    MessageDigest digest = sha256();
+    List<Entry> entries = null;
+    List<SourceMetaData> sources = new ArrayList<>();
+
+    InputStream document = new DigestInputStream(new LimitedInputStream(in, maxBytes), digest);
+    try (JsonParser parser = mapper.getFactory().createParser(document)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT)
+        throw new IOException("entries document is not a JSON object");
+
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        String field = parser.getCurrentName();
+        parser.nextToken();
+        if (RESULTS.equals(field)) {
+          entries = readArray(parser, Entry.class);
+        } else if (SOURCES.equals(field)) {
+          sources = readArray(parser, SourceMetaData.class);
+        } else {
+          parser.skipChildren();
+        }
+      }
+      // hash whatever trails the document as well, so the version covers every byte
+      document.transferTo(OutputStream.nullOutputStream());
+    }
+
+    if (entries == null)
+      throw new IOException("entries document has no " + RESULTS);
+
+    String version = version(digest);
+    logger.info("Finished JSON mapping of " + entries.size() + " entries, " + heap.describe());
+    ListSnapshot snapshot = ListSnapshot.build(version, entries, sources, objectMapper);
+    logger.info("Finished indexing, " + heap.describe());
+    return snapshot;
+  }
+
+  private static <T> List<T> readArray(JsonParser parser, Class<T> type) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY)
+      throw new IOException("expected an array of " + type.getSimpleName());
+
+    List<T> values = new ArrayList<>();
+    while (parser.nextToken() != JsonToken.END_ARRAY)
+      values.add(mapper.readValue(parser, type));
+    return values;
+  }
+
+  /**
+   * Formats a finished content digest as a list version.
+   */
+  static String version(MessageDigest digest) {
+    return HexFormat.of().formatHex(digest.digest(), 0, 8);
+  }
+
+  static MessageDigest sha256() {
+    try {
+      return MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Fails the load once more than the allowed number of bytes has been read, so an oversized
+   * upstream document cannot grow the heap without bound.
+   */
+  static final class LimitedInputStream extends FilterInputStream {
+    private final long maxBytes;
+    private long count;
+
+    LimitedInputStream(InputStream in, long maxBytes) {
+      super(in);
+      this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b >= 0)
+        count(1);
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int n = super.read(b, off, len);
+      if (n > 0)
+        count(n);
+      return n;
+    }
+
+    private void count(int n) throws IOException {
+      count += n;
+      if (count > maxBytes)
+        throw new IOException("entries document exceeds " + maxBytes + " bytes");
+    }
+  }
+
+  /**
+   * Bytes allocated by the loading thread while loading, and the heap in use afterwards.
+   */
+  private static final class HeapUsage {
+    private final long allocatedAtStart;
+
+    private HeapUsage(long allocatedAtStart) {
+      this.allocatedAtStart = allocatedAtStart;
+    }
+
+    static HeapUsage start() {
+      return new HeapUsage(allocated());
+    }
+
+    /**
+     * Reads the heap without resetting any peak: peaks are JVM wide and read by monitoring agents.
+     */
+    String describe() {
+      long used = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+      long allocated = allocated();
+      return "allocated " + (allocated < 0 ? "n/a" : ((allocated - allocatedAtStart) >> 20) + " MB")
+          + ", heap used " + (used >> 20) + " MB";
+    }
+
+    private static long allocated() {
+      if (ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return threads.getCurrentThreadAllocatedBytes();
+      }
+      return -1;
+    }
+  }
+}
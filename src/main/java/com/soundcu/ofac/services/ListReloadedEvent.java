@@ -0,0 +1,27 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.search.ListSnapshot;
+
+/**
+ * Published after a new list snapshot replaced the previous one.
+ */
+public class ListReloadedEvent {
+  private final ListSnapshot previous;
+  private final ListSnapshot next;
+
+  public ListReloadedEvent(ListSnapshot previous, ListSnapshot next) {
+    this.previous = previous;
+    this.next = next;
+  }
+
+  /**
+   * The snapshot that was replaced, or null for the first load.
+   */
+  public ListSnapshot getPrevious() {
+    return previous;
+  }
+
+  public ListSnapshot getNext() {
+    return next;
+  }
+}
@@ -1,134 +1,398 @@
 package com.soundcu.ofac.services;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.time.ZoneId;
-import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
-import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
 import java.util.Enumeration;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map.Entry;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import javax.servlet.http.HttpServletRequest;
 
-import org.json.JSONArray;
-import org.json.JSONException;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+/**
+ * Audit log of every request and response. Request threads only capture what the message needs
+ * and hand it to a bounded queue; a single writer thread writes each message with a streaming
+ * generator, reusing the bytes already sent for responses. When the queue is full, {@code logger.async.policy}
+ * decides whether the request waits ({@code block}, the default) or the message is dropped and
+ * counted ({@code drop}). On shutdown the writer writes every message queued before it closed;
+ * messages logged after that are dropped and counted, never waited for.
+ */
 @Service
 public class OfacLogger
 {
 	private static final ObjectMapper objectMapper = new ObjectMapper();
 	private static final String ENTITY_NAME = "OFAC";
+	private static final DateTimeFormatter TIMESTAMP = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss")
+			.withZone(ZoneId.of("America/Los_Angeles"));
+	private static final LogEvent STOP = new LogEvent(null, null, null, null, 0);
 	
 	@Value("${logger.name}")
 	private String loggerName;
 	
+	@Value("${logger.async.capacity}")
+	private int capacity;
+	
+	@Value("${logger.async.policy}")
+	private String policy;
+	
+	@Value("${logger.body.max-bytes}")
+	private int maxBodyBytes;
+	
+	@Value("${logger.body.sample-rate}")
+	private double sampleRate;
+	
+	@Autowired
+	private SearchMetrics metrics;
+	
 	private Logger logger;
+	private BlockingQueue<LogEvent> queue;
+	private boolean block;
+	private Thread writer;
+	private volatile boolean closed;
+	
+	/**
+	 * What one log message needs, captured on the request thread.
+	 */
+	private static final class LogEvent
+	{
+		private final String type;
+		private final String path;
+		private final List<String> headers;
+		private final Object body;
+		private final long timestamp;
+	
+		private LogEvent(String type, String path, List<String> headers, Object body, long timestamp)
+		{
+			this.type = type;
+			this.path = path;
+			this.headers = headers;
+			this.body = body;
+			this.timestamp = timestamp;
+		}
+	}
+	
+	/**
+	 * A ByteArrayOutputStream whose buffer can be read without copying it.
+	 */
+	private static final class Bytes extends ByteArrayOutputStream
+	{
+		private Bytes(int size)
+		{
+			super(size);
+		}
+		
+		private byte[] bytes()
+		{
+			return buf;
+		}
+	}
+	
+	@PostConstruct
+	public void init()
+	{
+		logger = LoggerFactory.getLogger(loggerName);
+		queue = new ArrayBlockingQueue<>(capacity);
+		block = "block".equalsIgnoreCase(policy);
+		writer = new Thread(this::write, "ofac-logger");
+		writer.setDaemon(true);
+		writer.start();
+	}
 	
-	private JSONArray extractRequestHeaders(HttpServletRequest request)
+	/**
+	 * Writes the messages still queued before the application stops. Messages that slipped into
+	 * the queue after the writer finished are written here.
+	 */
+	@PreDestroy
+	public void shutdown() throws InterruptedException
 	{
-		JSONArray headers = new JSONArray();
+		closed = true;
+		if (!queue.offer(STOP, 10, TimeUnit.SECONDS))
+			logger.warn("The audit log writer did not take the stop message, " + queue.size() + " messages are still queued");
+		writer.join(10_000);
+		if (!writer.isAlive())
+			drain(new MessageWriter());
+	}
+	
+	private List<String> extractRequestHeaders(HttpServletRequest request)
+	{
+		List<String> headers = new ArrayList<>();
 		Enumeration<String> headerNames = request.getHeaderNames();
 		while(headerNames.hasMoreElements())
 		{
 			String name = headerNames.nextElement();
-			headers.put(name + ": " + request.getHeader(name));
+			headers.add(name + ": " + request.getHeader(name));
 		}
-		
+	
 		return headers;
 	}
 	
-	private String extractResponseBody(ResponseEntity<Object> response)
+	private List<String> extractResponseHeaders(HttpHeaders headers)
 	{
-		if (response.hasBody())
-        {
-            try
+		List<String> responseHeaders = new ArrayList<>(headers.size());
+		for (Entry<String, List<String>> entry : headers.entrySet())
+			responseHeaders.add(entry.getKey() + ": " + String.join("", entry.getValue()));
+	
+		return responseHeaders;
+	}
+	
+	public void logRequest(HttpServletRequest request)
+	{
+		long start = System.nanoTime();
+		logBulkRequest(request);
+		metrics.record(SearchMetrics.LOG_REQUEST, start);
+	}
+	
+	/**
+	 * Logs a request to the batch or job endpoints, the same as {@link #logRequest(HttpServletRequest)}
+	 * but without timing it, see {@link SearchMetrics}.
+	 */
+	public void logBulkRequest(HttpServletRequest request)
+	{
+		enqueue(new LogEvent("REQUEST", request.getRequestURI(), extractRequestHeaders(request), null, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Logs a response already serialized for the client, without serializing it again. Only the
+	 * bytes are queued, never the response object, which may still change after this returns.
+	 * The bytes must not change once handed over.
+	 */
+	public void logResponse(HttpHeaders headers, byte[] body, String path)
+	{
+		long start = System.nanoTime();
+		logBulkResponse(headers, body, path);
+		metrics.record(SearchMetrics.LOG_RESPONSE, start);
+	}
+	
+	/**
+	 * Logs a response of the job endpoints, the same as {@link #logResponse(HttpHeaders, byte[], String)}
+	 * but without timing it, see {@link SearchMetrics}.
+	 */
+	public void logBulkResponse(HttpHeaders headers, byte[] body, String path)
+	{
+		enqueue(new LogEvent("RESPONSE", path, extractResponseHeaders(headers), body, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Logs one line of a streamed batch response, as written to the client.
+	 */
+	public void logBatchResult(String path, byte[] line)
+	{
+		enqueue(new LogEvent("RESPONSE", path, null, line, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Logs the end of a streamed batch response, after each of its lines was logged.
+	 */
+	public void logBatchResponse(String path, int items, int errors)
+	{
+		String summary = "{\"items\":" + items + ",\"errors\":" + errors + "}";
+		enqueue(new LogEvent("RESPONSE", path, null, summary, System.currentTimeMillis()));
+	}
+	
+	private void enqueue(LogEvent event)
+	{
+		if (closed)
+		{
+			metrics.logDropped();
+			return;
+		}
+	
+		if (block)
+		{
+			try
 			{
-				return objectMapper.writeValueAsString(response.getBody());
+				queue.put(event);
 			}
-			catch (JSONException | JsonProcessingException e)
+			catch (InterruptedException e)
 			{
-				
+				Thread.currentThread().interrupt();
+				return;
 			}
-        }
-		
-		return "";
+		}
+		else if (!queue.offer(event))
+		{
+			metrics.logDropped();
+			return;
+		}
+	
+		// closed while this was queued and nothing is left to write it
+		if (closed && !writer.isAlive() && queue.remove(event))
+			metrics.logDropped();
 	}
-
-	private JSONArray extractResponseHeaders(ResponseEntity<Object> response)
-	{
-		JSONArray responseHeaders = new JSONArray();
-        HttpHeaders headers = response.getHeaders();
-        Iterator<Entry<String, List<String>>> it = headers.entrySet().iterator();
-        while (it.hasNext())
-        {
-            Entry<String, List<String>> entry = it.next();
-            StringBuilder builder = new StringBuilder();
-            for (String s : entry.getValue())
-                builder.append(s);
-            
-            responseHeaders.put(entry.getKey() + ": " + builder.toString());
-        }
-        
-        return responseHeaders;
+	
+	/**
+	 * Writes messages one at a time, reusing its buffers; owned by a single thread.
+	 */
+	private final class MessageWriter
+	{
+		private final Bytes message = new Bytes(4096);
+		private final Bytes body = new Bytes(4096);
+		private final Bytes headers = new Bytes(256);
+		private long second = Long.MIN_VALUE;
+		private String timestamp;
+	
+		private void write(LogEvent event)
+		{
+			// one formatted timestamp per second of events
+			if (event.timestamp / 1000 != second)
+			{
+				second = event.timestamp / 1000;
+				timestamp = TIMESTAMP.format(Instant.ofEpochSecond(second));
+			}
+	
+			try
+			{
+				message.reset();
+				writeMessage(event, timestamp, message, body, headers);
+				logger.info(message.toString(StandardCharsets.UTF_8));
+			}
+			catch (IOException | RuntimeException e)
+			{
+				logger.warn("Could not write the " + event.type + " message of " + event.path, e);
+			}
+		}
 	}
-
-	private String getTimestamp()
-    {
-		String timestamp = ZonedDateTime.now(ZoneId.of("America/Los_Angeles"))
-			.truncatedTo(ChronoUnit.SECONDS)
-			.format(DateTimeFormatter.ISO_DATE_TIME);
-		return timestamp.substring(0, timestamp.lastIndexOf("-"));
-    }
 	
-	private void initLogger()
+	/**
+	 * The writer thread: takes messages off the queue until stopped, then writes whatever is
+	 * still queued.
+	 */
+	private void write()
 	{
-		logger = LoggerFactory.getLogger(loggerName);
+		MessageWriter out = new MessageWriter();
+		while (true)
+		{
+			LogEvent event;
+			try
+			{
+				event = queue.take();
+			}
+			catch (InterruptedException e)
+			{
+				return;
+			}
+			if (event == STOP)
+			{
+				drain(out);
+				return;
+			}
+			out.write(event);
+		}
+	}
+	
+	private void drain(MessageWriter out)
+	{
+		LogEvent event;
+		while ((event = queue.poll()) != null)
+		{
+			if (event != STOP)
+				out.write(event);
+		}
+	}
+	
+	private void writeMessage(LogEvent event, String timestamp, Bytes message, Bytes body, Bytes headers)
+			throws IOException
+	{
+		try (JsonGenerator json = objectMapper.getFactory().createGenerator(message))
+		{
+			json.writeStartObject();
+			json.writeStringField("entityName", ENTITY_NAME);
+			json.writeFieldName("messageBody");
+			boolean truncated = writeBody(json, event.body, body);
+			json.writeStringField("messageId", "");
+			json.writeStringField("messageType", event.type);
+			json.writeStringField("priority", "VERBOSE");
+			json.writeFieldName("requestHeaders");
+			writeHeaders(json, event.headers, headers);
+			json.writeStringField("requestPath", event.path);
+			json.writeStringField("requestQueryParams", "");
+			json.writeStringField("timestamp", timestamp);
+			if (truncated)
+				json.writeBooleanField("messageBodyTruncated", true);
+			json.writeEndObject();
+		}
+	}
+	
+	/**
+	 * Writes the body as a JSON string, cut at {@code logger.body.max-bytes} when set and only for
+	 * the {@code logger.body.sample-rate} share of responses.
+	 *
+	 * @return whether the body was cut
+	 */
+	private boolean writeBody(JsonGenerator json, Object value, Bytes buffer) throws IOException
+	{
+		if (value == null || sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate)
+		{
+			json.writeString("");
+			return false;
+		}
+	
+		byte[] bytes;
+		int size;
+		if (value instanceof byte[])
+		{
+			bytes = (byte[]) value;
+			size = bytes.length;
+		}
+		else
+		{
+			buffer.reset();
+			buffer.write(((String) value).getBytes(StandardCharsets.UTF_8));
+			bytes = buffer.bytes();
+			size = buffer.size();
+		}
+	
+		int length = size;
+		if (maxBodyBytes > 0 && size > maxBodyBytes)
+		{
+			// never cut a multi-byte character in two
+			length = maxBodyBytes;
+			while (length > 0 && (bytes[length] & 0xC0) == 0x80)
+				length--;
+		}
+		json.writeUTF8String(bytes, 0, length);
+		return length < size;
+	}
+	
+	/**
+	 * Writes the headers as the string form of a JSON array, the way they have always been logged.
+	 */
+	private void writeHeaders(JsonGenerator json, List<String> headers, Bytes array) throws IOException
+	{
+		if (headers == null)
+		{
+			json.writeString("");
+			return;
+		}
+	
+		array.reset();
+		try (JsonGenerator values = objectMapper.getFactory().createGenerator(array))
+		{
+			values.writeStartArray();
+			for (String header : headers)
+				values.writeString(header);
+			values.writeEndArray();
+		}
+		json.writeUTF8String(array.bytes(), 0, array.size());
 	}
-
-	public void logRequest(HttpServletRequest request)
-    {
-		if (logger == null)
-			initLogger();
-		
-        JSONObject message = new JSONObject();
-        message.put("entityName", ENTITY_NAME);
-        message.put("messageBody", "");
-        message.put("messageId", "");
-        message.put("messageType", "REQUEST");
-        message.put("priority", "VERBOSE");
-        message.put("requestHeaders", extractRequestHeaders(request).toString());
-        message.put("requestPath", request.getRequestURI());
-        message.put("requestQueryParams", "");
-        message.put("timestamp", getTimestamp());
-        logger.info(message.toString());
-    }
-	
-	public void logResponse(ResponseEntity<Object> response, String path)
-    {
-		if (logger == null)
-			initLogger();
-		
-        JSONObject message = new JSONObject();
-        message.put("entityName", ENTITY_NAME);
-        message.put("messageBody", extractResponseBody(response));
-        message.put("messageId", "");
-        message.put("messageType", "RESPONSE");
-        message.put("priority", "VERBOSE");
-        message.put("requestHeaders", extractResponseHeaders(response).toString());
-        message.put("requestPath", path);
-        message.put("requestQueryParams", "");
-        message.put("timestamp", getTimestamp());
-        logger.info(message.toString());
-    }
 }
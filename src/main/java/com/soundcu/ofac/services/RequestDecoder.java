@@ -0,0 +1,78 @@
+package com.soundcu.ofac.services;
+
+import static org.springframework.http.MediaType.APPLICATION_FORM_URLENCODED;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import com.soundcu.ofac.exceptions.BadRequestException;
+import com.soundcu.ofac.search.ScreeningQuery;
+
+/**
+ * Turns a form or JSON request body into a validated {@link ScreeningQuery}, parsing it once.
+ */
+@Service
+public class RequestDecoder
+{
+	@Autowired
+	private JSONValidator validator;
+	
+	@Autowired
+	private SearchMetrics metrics;
+	
+	/**
+	 * Decodes the body of a screening request, timing its parse and validate stages.
+	 */
+	public ScreeningQuery decode(String contentType, String body)
+	{
+		long start = System.nanoTime();
+		JSONObject entity = APPLICATION_FORM_URLENCODED.isCompatibleWith(MediaType.parseMediaType(contentType)) ? parseForm(body) : parseJson(body);
+		metrics.record(SearchMetrics.PARSE, start);
+		
+		start = System.nanoTime();
+		validator.isValid(entity);
+		metrics.record(SearchMetrics.VALIDATE, start);
+		return ScreeningQuery.of(entity);
+	}
+	
+	/**
+	 * Decodes one batch item or job row, already parsed. Not timed, see {@link SearchMetrics}.
+	 */
+	public ScreeningQuery decode(JSONObject entity)
+	{
+		validator.isValid(entity);
+		return ScreeningQuery.of(entity);
+	}
+	
+	private JSONObject parseJson(String body)
+	{
+		try
+		{
+			return new JSONObject(body);
+		}
+		catch (JSONException e)
+		{
+			throw new BadRequestException(141, e.getMessage());
+		}
+	}
+	
+	private JSONObject parseForm(String body)
+	{
+		JSONObject entity = new JSONObject();
+		String[] pairs = body.split("&");
+		for (String pair : pairs)
+		{
+			String[] tokens = pair.split("=");
+			String value = tokens.length > 1 ? URLDecoder.decode(tokens[1], StandardCharsets.UTF_8) : null;
+			entity.put(tokens[0], value);
+		}
+		
+		return entity;
+	}
+}
@@ -0,0 +1,143 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.model.RescreenHit;
+import com.soundcu.ofac.model.Subject;
+import com.soundcu.ofac.search.ListDiff;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Rescreens the registered subjects when the list is reloaded, against only the entries the
+ * reload added or changed, and appends every new hit to {@code rescreen.dir/outbox.ndjson}. The
+ * rescreening runs on its own pool of {@code rescreen.threads}, never on the thread that reloaded
+ * the list nor on the common pool.
+ */
+@Service
+@Slf4j
+public class Rescreener {
+    private static final String OUTBOX = "outbox.ndjson";
+
+    @Value("${rescreen.threads}")
+    private int threads;
+
+    @Autowired
+    private SubjectRegistry registry;
+
+    @Autowired
+    private EntryService entryService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ForkJoinPool pool;
+
+    @PostConstruct
+    public void init() {
+        if (!registry.isEnabled())
+            return;
+
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger count = new AtomicInteger();
+        pool = new ForkJoinPool(size, (forkJoinPool) -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(forkJoinPool);
+            thread.setName("rescreen-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null)
+            pool.shutdownNow();
+    }
+
+    @EventListener
+    public void onReload(ListReloadedEvent event) {
+        if (event.getPrevious() == null || pool == null)
+            return;
+
+        pool.execute(() -> rescreen(event));
+    }
+
+    /**
+     * Rescreens against one reload; one reload at a time, so that the outbox keeps their order.
+     * Called on the rescreen pool, where the parallel stream of subjects runs too.
+     */
+    synchronized void rescreen(ListReloadedEvent event) {
+        long start = System.nanoTime();
+        ListSnapshot next = event.getNext();
+        ListDiff diff = ListDiff.between(event.getPrevious(), next);
+        BitSet delta = diff.getDelta();
+        logger.info("List " + diff.getPreviousVersion() + " -> " + diff.getNextVersion() + ": "
+                + diff.getAdded().cardinality() + " added, " + diff.getChanged().cardinality() + " changed, "
+                + diff.getRemoved().size() + " removed");
+        if (delta.isEmpty())
+            return;
+
+        String now = Instant.now().toString();
+        List<RescreenHit> hits = registry.getSubjects().parallelStream()
+                .map((subject) -> rescreen(subject, next, delta, diff, now))
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+        try {
+            append(hits);
+        } catch (IOException e) {
+            logger.error("Could not write " + hits.size() + " rescreening hits to the outbox", e);
+            return;
+        }
+        logger.info("Rescreened " + registry.getSubjects().size() + " subjects against " + delta.cardinality()
+                + " entries in " + (System.nanoTime() - start) / 1_000_000 + " ms, " + hits.size() + " new hits");
+    }
+
+    private RescreenHit rescreen(Subject subject, ListSnapshot next, BitSet delta, ListDiff diff, String now) {
+        ScreeningQuery query = ScreeningQuery.of(new JSONObject(subject.getFields()));
+        List<Match> matches = entryService.search(next, subject.getMinimum_score(), query, delta, subject.getType(),
+                subject.getSources(), 0);
+        return matches.isEmpty()
+                ? null
+                : new RescreenHit(subject, matches, diff.getNextVersion(), diff.getPreviousVersion(), now);
+    }
+
+    private void append(List<RescreenHit> hits) throws IOException {
+        if (hits.isEmpty())
+            return;
+
+        ByteArrayOutputStream lines = new ByteArrayOutputStream();
+        for (RescreenHit hit : hits) {
+            lines.write(objectMapper.writeValueAsBytes(hit));
+            lines.write('\n');
+        }
+        Path dir = Files.createDirectories(registry.directory());
+        Files.write(dir.resolve(OUTBOX), lines.toByteArray(), StandardOpenOption.CREATE, StandardOpenOption.APPEND,
+                StandardOpenOption.SYNC);
+    }
+
+    Path getOutbox() {
+        return registry.directory().resolve(OUTBOX);
+    }
+}
@@ -0,0 +1,52 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.io.UncheckedIOException;
+
+/**
+ * Serializes a response once into the bytes written to the client, so the audit log can reuse
+ * them instead of serializing the response again.
+ */
+@Service
+public class ResponseRenderer {
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private SearchMetrics metrics;
+
+    /**
+     * Writes the response as UTF-8 JSON with the application's ObjectMapper, the same as the
+     * JSON message converter would.
+     *
+     * @param response response
+     * @return byte[]
+     */
+    public byte[] render(Object response) {
+        long start = System.nanoTime();
+        try {
+            return renderBulk(response);
+        } finally {
+            metrics.record(SearchMetrics.SERIALIZE, start);
+        }
+    }
+
+    /**
+     * Renders a response of the batch or job endpoints, the same as {@link #render(Object)} but
+     * without timing it, see {@link SearchMetrics}.
+     *
+     * @param response response
+     * @return byte[]
+     */
+    public byte[] renderBulk(Object response) {
+        try {
+            return objectMapper.writeValueAsBytes(response);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
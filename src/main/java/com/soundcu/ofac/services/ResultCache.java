@@ -0,0 +1,180 @@
+package com.soundcu.ofac.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Recent search results, keyed by the list version, the day (entries become active and
+ * inactive by date), the minimum score, the type filter, the result limit and the normalized query. Only the
+ * matches are cached; callers build the response around them, so timestamps and requestors
+ * are always fresh. The results live in a Caffeine cache, so concurrent searches never wait on a
+ * lock to read it: the least valuable results are evicted past {@code cache.max-entries},
+ * results older than {@code cache.ttl-seconds} expire, and a list reload drops the whole cache.
+ * <p>
+ * Identical searches running at the same time are coalesced: the first caller runs the search
+ * and the others wait for its matches instead of repeating it. This also holds with the cache
+ * disabled.
+ */
+@Service
+@Slf4j
+public class ResultCache {
+    @Value("${cache.max-entries}")
+    private int maxEntries;
+
+    @Value("${cache.ttl-seconds}")
+    private long ttlSeconds;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final Map<String, CompletableFuture<List<Match>>> inFlight = new ConcurrentHashMap<>();
+    private Cache<String, List<Match>> results;
+
+    @PostConstruct
+    public void init() {
+        results = Caffeine.newBuilder()
+                .maximumSize(Math.max(0, maxEntries))
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                // evictions are counted as they happen rather than on a pool
+                .executor(Runnable::run)
+                .<String, List<Match>>removalListener((key, matches, cause) -> {
+                    if (cause.wasEvicted())
+                        evictions.increment();
+                })
+                .build();
+    }
+
+    /**
+     * The cache key of a search.
+     *
+     * @param snapshot     snapshot
+     * @param query        query
+     * @param minimumScore score
+     * @param type         entry type, or null for all types
+     * @param sources      normalized source filter, or null for all sources
+     * @param maxResults   result limit, or 0 for none
+     * @return String
+     */
+    public static String key(ListSnapshot snapshot, ScreeningQuery query, int minimumScore, String type,
+                             Collection<String> sources, int maxResults) {
+        return snapshot.getVersion() + '\0' + LocalDate.now().toEpochDay() + '\0' + minimumScore + '\0' + type + '\0'
+                + sources + '\0' + maxResults + '\0' + query.getKey();
+    }
+
+    /**
+     * Returns the cached matches for the key, waits for the same search already running in
+     * another request, or runs the search and caches its matches. The returned list is shared
+     * and cannot be modified.
+     *
+     * @param key    key
+     * @param search search
+     * @return List
+     */
+    public List<Match> get(String key, Supplier<List<Match>> search) {
+        List<Match> cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+
+        CompletableFuture<List<Match>> flight = new CompletableFuture<>();
+        CompletableFuture<List<Match>> leader = inFlight.putIfAbsent(key, flight);
+        if (leader != null) {
+            coalesced.increment();
+            return await(leader);
+        }
+
+        try {
+            // a leader may have finished between the lookup above and taking the lead
+            List<Match> matches = lookup(key);
+            if (matches != null) {
+                hits.increment();
+                flight.complete(matches);
+                return matches;
+            }
+
+            misses.increment();
+            matches = Collections.unmodifiableList(search.get());
+            if (maxEntries > 0)
+                results.put(key, matches);
+            flight.complete(matches);
+            return matches;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private List<Match> lookup(String key) {
+        return maxEntries > 0 ? results.getIfPresent(key) : null;
+    }
+
+    private static List<Match> await(CompletableFuture<List<Match>> leader) {
+        try {
+            return leader.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw e;
+        }
+    }
+
+    @EventListener
+    public void onReload(ListReloadedEvent event) {
+        long dropped = results.estimatedSize();
+        results.invalidateAll();
+        logger.info("Dropped " + dropped + " cached results for list version " + event.getNext().getVersion() + " ("
+                + hits.sum() + " hits, " + misses.sum() + " misses, " + coalesced.sum() + " coalesced, " + evictions.sum()
+                + " evictions so far)");
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Searches that waited for an identical search in flight instead of running their own.
+     *
+     * @return long
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long size() {
+        return results.estimatedSize();
+    }
+}
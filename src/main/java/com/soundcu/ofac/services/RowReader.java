@@ -0,0 +1,205 @@
+package com.soundcu.ofac.services;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Reads the rows of a spooled bulk file one at a time: NDJSON, or CSV whose header row names
+ * the request fields. A row that cannot be read becomes a row with an error, so one bad row
+ * does not stop the job.
+ */
+abstract class RowReader implements Closeable {
+  private static final String ID = "id";
+
+  enum Format {
+    CSV, NDJSON
+  }
+
+  protected final BufferedReader reader;
+  private long number;
+
+  private RowReader(Path file) throws IOException {
+    this.reader = Files.newBufferedReader(file, StandardCharsets.UTF_8);
+  }
+
+  static RowReader open(Path file, Format format) throws IOException {
+    return format == Format.CSV ? new Csv(file) : new Ndjson(file);
+  }
+
+  /**
+   * Reads up to {@code count} rows.
+   *
+   * @return List of rows, empty at the end of the file
+   */
+  List<Row> next(int count) throws IOException {
+    List<Row> rows = new ArrayList<>(count);
+    Row row;
+    while (rows.size() < count && (row = next()) != null)
+      rows.add(row);
+    return rows;
+  }
+
+  /**
+   * Skips rows already screened by an earlier run.
+   */
+  void skip(long count) throws IOException {
+    while (number < count && next() != null) {
+      // rows are numbered as they are read
+    }
+  }
+
+  /**
+   * Reads to the end of the file and returns its number of rows.
+   */
+  long count() throws IOException {
+    while (next() != null) {
+      // rows are numbered as they are read
+    }
+    return number;
+  }
+
+  Row next() throws IOException {
+    String raw;
+    do {
+      raw = readRecord();
+      if (raw == null)
+        return null;
+    } while (raw.isBlank());
+
+    number++;
+    try {
+      JSONObject entity = parse(raw);
+      Object id = entity.opt(ID);
+      return new Row(id == null || id == JSONObject.NULL ? String.valueOf(number) : String.valueOf(id), entity, null);
+    } catch (JSONException e) {
+      return new Row(String.valueOf(number), null, e.getMessage());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+
+  protected abstract String readRecord() throws IOException;
+
+  protected abstract JSONObject parse(String record);
+
+  /**
+   * One input row with its id: the row's own "id" field, or its 1-based number in the file.
+   */
+  static final class Row {
+    final String id;
+    final JSONObject entity;
+    final String error;
+
+    private Row(String id, JSONObject entity, String error) {
+      this.id = id;
+      this.entity = entity;
+      this.error = error;
+    }
+  }
+
+  private static final class Ndjson extends RowReader {
+    private Ndjson(Path file) throws IOException {
+      super(file);
+    }
+
+    @Override
+    protected String readRecord() throws IOException {
+      return reader.readLine();
+    }
+
+    @Override
+    protected JSONObject parse(String record) {
+      return new JSONObject(record);
+    }
+  }
+
+  /**
+   * RFC 4180 CSV: fields may be quoted, quoted fields may hold commas, doubled quotes and line breaks.
+   */
+  private static final class Csv extends RowReader {
+    private final List<String> header;
+    private final StringBuilder record = new StringBuilder();
+
+    private Csv(Path file) throws IOException {
+      super(file);
+      String first = readRecord();
+      this.header = new ArrayList<>();
+      if (first != null) {
+        for (String column : split(first))
+          header.add(column.trim().toLowerCase(Locale.ROOT));
+      }
+    }
+
+    @Override
+    protected String readRecord() throws IOException {
+      record.setLength(0);
+      boolean quoted = false;
+      int c;
+      while ((c = reader.read()) >= 0) {
+        if (c == '"') {
+          quoted = !quoted;
+        } else if (!quoted && (c == '\n' || c == '\r')) {
+          if (c == '\r') {
+            reader.mark(1);
+            if (reader.read() != '\n')
+              reader.reset();
+          }
+          return record.toString();
+        }
+        record.append((char) c);
+      }
+      return record.length() == 0 ? null : record.toString();
+    }
+
+    @Override
+    protected JSONObject parse(String record) {
+      List<String> values = split(record);
+      if (values.size() > header.size())
+        throw new JSONException("Row has " + values.size() + " fields, header has " + header.size());
+
+      JSONObject entity = new JSONObject();
+      for (int i = 0; i < values.size(); i++) {
+        if (!values.get(i).isEmpty())
+          entity.put(header.get(i), values.get(i));
+      }
+      return entity;
+    }
+
+    private static List<String> split(String record) {
+      List<String> fields = new ArrayList<>();
+      StringBuilder field = new StringBuilder();
+      boolean quoted = false;
+      for (int i = 0; i < record.length(); i++) {
+        char c = record.charAt(i);
+        if (c == '"') {
+          if (quoted && i + 1 < record.length() && record.charAt(i + 1) == '"') {
+            field.append('"');
+            i++;
+          } else {
+            quoted = !quoted;
+          }
+        } else if (c == ',' && !quoted) {
+          fields.add(field.toString());
+          field.setLength(0);
+        } else {
+          field.append(c);
+        }
+      }
+      fields.add(field.toString());
+      return fields;
+    }
+  }
+}
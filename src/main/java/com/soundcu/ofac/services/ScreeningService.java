@@ -0,0 +1,120 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.exceptions.BadRequestException;
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.Response;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+@Service
+public class ScreeningService {
+    @Autowired
+    private EntryService entryService;
+
+    @Autowired
+    private SubjectRegistry registry;
+
+    @Autowired
+    private ResultCache cache;
+
+    @Autowired
+    private SearchMetrics metrics;
+
+    /**
+     * Screens one query against the given list snapshot, see
+     * {@link #screen(ListSnapshot, ScreeningQuery, int, String, int, Requestor)}, returning every match.
+     */
+    public Response screen(ListSnapshot snapshot, ScreeningQuery query, int minimumScore, String type, Requestor requestor) {
+        return screen(snapshot, query, minimumScore, type, 0, requestor);
+    }
+
+    /**
+     * Screens one query against the given list snapshot in every source, see
+     * {@link #screen(ListSnapshot, ScreeningQuery, int, String, List, int, Requestor)}.
+     */
+    public Response screen(ListSnapshot snapshot, ScreeningQuery query, int minimumScore, String type, int maxResults,
+                           Requestor requestor) {
+        return screen(snapshot, query, minimumScore, type, null, maxResults, requestor);
+    }
+
+    /**
+     * Screens one query against the given list snapshot and builds the response the API returns.
+     * Matches come from the result cache when the same search ran recently; the response around
+     * them is always new. The subject is registered so later list changes are rescreened against it.
+     *
+     * @param snapshot     snapshot
+     * @param query        query
+     * @param minimumScore score
+     * @param type         entry type to keep, or null for all types
+     * @param sources      sources to keep as returned by {@link #sources(ListSnapshot, String)}, or null for all
+     * @param maxResults   most matches to return, best first, or 0 for all of them
+     * @param requestor    requestor
+     * @return Response
+     */
+    public Response screen(ListSnapshot snapshot, ScreeningQuery query, int minimumScore, String type, List<String> sources,
+                           int maxResults, Requestor requestor) {
+        return screen(snapshot, query, minimumScore, type, sources, maxResults, requestor, true);
+    }
+
+    /**
+     * Screens one batch item or job row, the same as
+     * {@link #screen(ListSnapshot, ScreeningQuery, int, String, List, int, Requestor)} but without
+     * timing the request stages, see {@link SearchMetrics}.
+     */
+    public Response screenRow(ListSnapshot snapshot, ScreeningQuery query, int minimumScore, String type,
+                              List<String> sources, int maxResults, Requestor requestor) {
+        return screen(snapshot, query, minimumScore, type, sources, maxResults, requestor, false);
+    }
+
+    private Response screen(ListSnapshot snapshot, ScreeningQuery query, int minimumScore, String type, List<String> sources,
+                            int maxResults, Requestor requestor, boolean timed) {
+        registry.record(query, minimumScore, type, sources, requestor);
+        long start = System.nanoTime();
+        List<Match> entries = cache.get(ResultCache.key(snapshot, query, minimumScore, type, sources, maxResults),
+                () -> entryService.search(snapshot, minimumScore, query, null, type, sources, maxResults));
+        if (timed)
+            metrics.record(SearchMetrics.SEARCH, start);
+
+        start = System.nanoTime();
+        Response response = new Response(entries, query.getName() != null ? query.getName() : "");
+        response.setSeach_performed_by(requestor);
+        response.setSources_used(snapshot.sourcesUsed(entries));
+        response.setList_version(snapshot.getVersion());
+        if (timed)
+            metrics.record(SearchMetrics.RESPONSE, start);
+        return response;
+    }
+
+    /**
+     * Reads the optional sources header: a comma separated list of source names or short codes,
+     * such as {@code SDN,EL}. Every source must appear in the snapshot, so a misspelt source
+     * cannot silently narrow a screening to nothing.
+     *
+     * @param snapshot snapshot
+     * @param header   header, or null
+     * @return sorted lower case sources, or null for all sources
+     */
+    public List<String> sources(ListSnapshot snapshot, String header) {
+        if (header == null || header.isBlank())
+            return null;
+
+        Set<String> sources = new TreeSet<>();
+        for (String source : header.split(",")) {
+            if (source.isBlank())
+                continue;
+            if (!snapshot.getPartitions().hasSource(source))
+                throw new BadRequestException(133, "Unknown source '" + source.trim() + "'.");
+            sources.add(source.trim().toLowerCase(Locale.ROOT));
+        }
+        return sources.isEmpty() ? null : new ArrayList<>(sources);
+    }
+}
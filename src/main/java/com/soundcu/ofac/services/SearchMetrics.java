@@ -0,0 +1,95 @@
+package com.soundcu.ofac.services;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Timings of each stage of a screening request and how many names a search had to score. Stage
+ * timers publish percentile histograms, so the p99 of every stage can be computed across pods.
+ * Only single screening requests are timed: batch items and job rows are screened many at a time
+ * on their own pools and would skew the timings of a request.
+ */
+@Service
+public class SearchMetrics {
+    public static final String PARSE = "parse";
+    public static final String VALIDATE = "validate";
+    public static final String SEARCH = "search";
+    public static final String RESPONSE = "response";
+    public static final String SERIALIZE = "serialize";
+    public static final String LOG_REQUEST = "log_request";
+    public static final String LOG_RESPONSE = "log_response";
+
+    private static final String[] STAGES = {PARSE, VALIDATE, SEARCH, RESPONSE, SERIALIZE, LOG_REQUEST, LOG_RESPONSE};
+
+    @Autowired
+    private MeterRegistry registry;
+
+    private final Map<String, Timer> stages = new HashMap<>();
+    private DistributionSummary prunedByIndex;
+    private DistributionSummary skipped;
+    private DistributionSummary scored;
+    private Counter logsDropped;
+
+    @PostConstruct
+    public void init() {
+        for (String stage : STAGES) {
+            stages.put(stage, Timer.builder("ofac.request.stage")
+                    .description("Time spent in one stage of a screening request")
+                    .tag("stage", stage)
+                    .publishPercentileHistogram()
+                    .register(registry));
+        }
+        prunedByIndex = names("pruned_by_index", "Names the trigram index ruled out");
+        skipped = names("skipped", "Candidate names skipped on their length bound, activity or the ranking threshold");
+        scored = names("scored", "Names scored in full");
+        logsDropped = Counter.builder("ofac.log.dropped")
+                .description("Audit log messages dropped because the log queue was full or closed")
+                .register(registry);
+    }
+
+    private DistributionSummary names(String outcome, String description) {
+        return DistributionSummary.builder("ofac.search.names")
+                .description(description)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    /**
+     * Records the time a stage took since the given {@link System#nanoTime()}.
+     *
+     * @param stage stage
+     * @param start start
+     */
+    public void record(String stage, long start) {
+        stages.get(stage).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records what happened to the names of one indexed search.
+     *
+     * @param names      names in the searched slice
+     * @param candidates names the trigram index kept
+     * @param scored     names scored in full
+     */
+    public void recordNames(int names, int candidates, long scored) {
+        prunedByIndex.record(names - candidates);
+        skipped.record(candidates - scored);
+        this.scored.record(scored);
+    }
+
+    /**
+     * Counts an audit log message the full log queue could not take.
+     */
+    public void logDropped() {
+        logsDropped.increment();
+    }
+}
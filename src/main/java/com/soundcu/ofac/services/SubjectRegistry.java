@@ -0,0 +1,243 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.Subject;
+import com.soundcu.ofac.search.ScreeningQuery;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.soundcu.ofac.search.ScreeningQuery.ADDRESS;
+import static com.soundcu.ofac.search.ScreeningQuery.BIRTH_DATE;
+import static com.soundcu.ofac.search.ScreeningQuery.CITY;
+import static com.soundcu.ofac.search.ScreeningQuery.COUNTRY;
+import static com.soundcu.ofac.search.ScreeningQuery.ID;
+import static com.soundcu.ofac.search.ScreeningQuery.NAME;
+import static com.soundcu.ofac.search.ScreeningQuery.POSTAL_CODE;
+import static com.soundcu.ofac.search.ScreeningQuery.STATE;
+import static com.soundcu.ofac.search.ScreeningQuery.TAX_ID;
+
+/**
+ * Every distinct subject screened by this service, so a list reload can rescreen them. Only the
+ * fields the search matches on are kept. The registry lives in memory, holds at most
+ * {@code rescreen.max-subjects} subjects for {@code rescreen.retention-days}, and new subjects are
+ * appended to {@code rescreen.dir/registry.ndjson} every {@code rescreen.flush-ms}, off the request
+ * threads. The file is read back on startup and rewritten without expired subjects once a day.
+ * Off unless {@code rescreen.enabled} is set, and then only with a persistent {@code rescreen.dir}.
+ */
+@Service
+@Slf4j
+public class SubjectRegistry {
+    private static final String REGISTRY = "registry.ndjson";
+    private static final String[] ADDRESS_FIELDS = {ADDRESS, CITY, COUNTRY, POSTAL_CODE, STATE};
+
+    @Value("${rescreen.enabled}")
+    private boolean enabled;
+
+    @Value("${rescreen.dir}")
+    private String directory;
+
+    @Value("${rescreen.max-subjects}")
+    private int maxSubjects;
+
+    @Value("${rescreen.retention-days}")
+    private int retentionDays;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private final Map<String, Subject> subjects = new ConcurrentHashMap<>();
+    private final Queue<Subject> pending = new ConcurrentLinkedQueue<>();
+    private Path file;
+    private Writer writer;
+    private volatile boolean full;
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled)
+            return;
+
+        file = Files.createDirectories(directory()).resolve(REGISTRY);
+        if (Files.exists(file)) {
+            Instant expiry = expiry();
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    try {
+                        Subject subject = objectMapper.readValue(line, Subject.class);
+                        if (!isExpired(subject, expiry) && subjects.size() < maxSubjects)
+                            subjects.putIfAbsent(subject.getKey(), subject);
+                    } catch (IOException e) {
+                        logger.warn("Skipping unreadable registry line: " + e.getMessage());
+                    }
+                }
+            }
+            logger.info("Loaded " + subjects.size() + " screened subjects from " + file);
+        }
+        writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * The registry holds personal data, so it must live in a directory chosen for it: never the
+     * temporary directory, where it would neither be protected nor cleaned up deliberately.
+     */
+    Path directory() {
+        if (directory == null || directory.isBlank())
+            throw new IllegalStateException("rescreen.dir must be set when rescreen.enabled is true");
+        return DataDirectory.of("rescreen.dir", directory);
+    }
+
+    @PreDestroy
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            flush();
+            writer.close();
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Remembers a screened subject unless the same subject was screened with the same settings
+     * before. Never waits on the disk: the subject is written by the next {@link #flush()}.
+     *
+     * @param query        query
+     * @param minimumScore score
+     * @param type         entry type, or null for all types
+     * @param sources      sources searched, or null for all sources
+     * @param requestor    requestor
+     */
+    public void record(ScreeningQuery query, int minimumScore, String type, List<String> sources, Requestor requestor) {
+        if (!enabled)
+            return;
+
+        Subject subject = new Subject();
+        subject.setFields(searchedFields(query));
+        subject.setMinimum_score(minimumScore);
+        subject.setType(type);
+        subject.setSources(sources);
+        subject.setSearch_performed_by(requestor);
+        subject.setScreened_at(Instant.now().toString());
+        if (subjects.containsKey(subject.getKey()))
+            return;
+        if (subjects.size() >= maxSubjects) {
+            if (!full)
+                logger.warn("The registry holds rescreen.max-subjects = " + maxSubjects + " subjects, new subjects are not kept");
+            full = true;
+            return;
+        }
+        if (subjects.putIfAbsent(subject.getKey(), subject) == null)
+            pending.add(subject);
+    }
+
+    /**
+     * The fields the search matches on: address fields only count when all of them were sent.
+     */
+    private static Map<String, String> searchedFields(ScreeningQuery query) {
+        Map<String, String> sent = query.getFields();
+        Map<String, String> fields = new TreeMap<>();
+        for (String field : new String[] {NAME, BIRTH_DATE, ID, TAX_ID}) {
+            if (sent.containsKey(field))
+                fields.put(field, sent.get(field));
+        }
+        if (query.getAddressKey() != null) {
+            for (String field : ADDRESS_FIELDS)
+                fields.put(field, sent.get(field));
+        }
+        return fields;
+    }
+
+    public Collection<Subject> getSubjects() {
+        return Collections.unmodifiableCollection(subjects.values());
+    }
+
+    /**
+     * Appends the subjects recorded since the last flush, all with one write to the disk.
+     */
+    @Scheduled(fixedDelayString = "${rescreen.flush-ms}")
+    public synchronized void flush() {
+        if (writer == null || pending.isEmpty())
+            return;
+
+        try {
+            for (Subject subject = pending.poll(); subject != null; subject = pending.poll()) {
+                writer.write(objectMapper.writeValueAsString(subject));
+                writer.write('\n');
+            }
+            writer.flush();
+        } catch (IOException e) {
+            logger.error("Could not persist screened subjects", e);
+        }
+    }
+
+    /**
+     * Forgets the subjects first screened longer than {@code rescreen.retention-days} ago and
+     * rewrites the registry file without them.
+     */
+    @Scheduled(fixedRate = 24 * 60 * 60 * 1000, initialDelay = 60 * 60 * 1000)
+    public synchronized void expire() {
+        if (writer == null)
+            return;
+
+        Instant expiry = expiry();
+        int before = subjects.size();
+        subjects.values().removeIf((subject) -> isExpired(subject, expiry));
+        full = false;
+        try {
+            flush();
+            writer.close();
+            Path rewritten = file.resolveSibling(REGISTRY + ".tmp");
+            try (Writer out = Files.newBufferedWriter(rewritten, StandardCharsets.UTF_8)) {
+                for (Subject subject : subjects.values()) {
+                    out.write(objectMapper.writeValueAsString(subject));
+                    out.write('\n');
+                }
+            }
+            Files.move(rewritten, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Expired " + (before - subjects.size()) + " screened subjects, " + subjects.size() + " kept");
+        } catch (IOException e) {
+            logger.error("Could not rewrite the registry of screened subjects", e);
+        } finally {
+            try {
+                writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } catch (IOException e) {
+                logger.error("Could not reopen the registry of screened subjects, new subjects are kept in memory only", e);
+                writer = null;
+            }
+        }
+    }
+
+    private Instant expiry() {
+        return Instant.now().minus(Duration.ofDays(retentionDays));
+    }
+
+    private static boolean isExpired(Subject subject, Instant expiry) {
+        return subject.getScreened_at() != null && Instant.parse(subject.getScreened_at()).isBefore(expiry);
+    }
+}
@@ -0,0 +1,67 @@
+package com.soundcu.ofac.model;
+
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.soundcu.ofac.search.IndexedEntry;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.SyntheticList;
+import com.soundcu.ofac.services.EntryBuilder;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class MatchSerializerTest {
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Autowired
+  private EntryBuilder entryBuilder;
+
+  /**
+   * Serializes Match field by field, the way it was before the entries were pre-rendered.
+   */
+  @JsonSerialize(using = JsonSerializer.None.class)
+  abstract static class FieldByField {
+  }
+
+  @Test
+  void preRenderedMatchesAreWrittenAsFieldByField() throws Exception {
+    ObjectMapper fieldByField = objectMapper.copy().addMixIn(Match.class, FieldByField.class);
+    List<IndexedEntry> entries = new ArrayList<>(entryBuilder.getSnapshot().getNames().getEntries());
+    entries.addAll(ListSnapshot.build("json", SyntheticList.entries(500, 9), Collections.emptyList(), objectMapper).getNames().getEntries());
+
+    List<Match> matches = new ArrayList<>();
+    for (int i = 0; i < entries.size(); i++) {
+      IndexedEntry entry = entries.get(i);
+      switch (i % 4) {
+        case 0:
+          matches.add(new Match(entry.getEntry(), entry.getJson(), 92, entry.getEntry().getName(), List.of("name")));
+          break;
+        case 1:
+          matches.add(new Match(entry.getEntry(), entry.getJson(), null, null, List.of("address", "id")));
+          break;
+        case 2:
+          matches.add(new Match(entry.getEntry(), entry.getJson(), 100, "\"Quoted\" \\ name\té", List.of("name", "date_of_birth")));
+          break;
+        default:
+          matches.add(new Match(entry.getEntry(), EntryJson.of(entry.getEntry(), objectMapper), null, "", Collections.emptyList()));
+      }
+    }
+
+    Response response = new Response(matches, "query");
+    assertEquals(fieldByField.writeValueAsString(response), objectMapper.writeValueAsString(response));
+    assertEquals(new String(fieldByField.writeValueAsBytes(response), "UTF-8"),
+        new String(objectMapper.writeValueAsBytes(response), "UTF-8"));
+    assertTrue(entryBuilder.getSnapshot().getJsonSize() > 0);
+  }
+}
@@ -0,0 +1,147 @@
+package com.soundcu.ofac.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class GramIndexTest {
+  private static final int[] SCORES = {0, 50, 70, 80, 85, 90, 95, 100};
+
+  private static List<Entry> entries;
+  private static GramIndex grams;
+
+  @BeforeAll
+  static void buildIndex() {
+    entries = SyntheticList.entries(2000, 42);
+    grams = GramIndex.build(NameIndex.build(entries, new ObjectMapper()));
+  }
+
+  @Test
+  void candidateSearchMatchesBruteForce() {
+    Random random = new Random(11);
+    for (int i = 0; i < 100; i++) {
+      String name = SyntheticList.query(random, entries);
+      NameForm query = NameForm.of(name);
+      int[][] scores = bruteForceScores(name);
+      for (int minimumScore : SCORES) {
+        BitSet candidates = grams.candidates(query, minimumScore);
+        assertEquals(bruteForce(scores, minimumScore), indexed(query, candidates, minimumScore),
+            "'" + name + "' at " + minimumScore);
+      }
+    }
+  }
+
+  @Test
+  void candidatesKeepEveryNameReachingTheScore() {
+    Random random = new Random(7);
+    for (int i = 0; i < 100; i++) {
+      NameForm query = NameForm.of(SyntheticList.query(random, entries));
+      int[] scores = new int[grams.variantCount()];
+      for (int v = 0; v < scores.length; v++)
+        scores[v] = grams.getVariant(v).score(query);
+
+      for (int minimumScore : SCORES) {
+        BitSet candidates = grams.candidates(query, minimumScore);
+        for (int v = 0; v < scores.length; v++) {
+          if (scores[v] >= minimumScore)
+            assertTrue(candidates.get(v), "missed '" + grams.getVariant(v).getOriginal() + "' for '"
+                + query.getOriginal() + "' at " + minimumScore);
+        }
+      }
+    }
+  }
+
+  @Test
+  void highScoresPruneMostNames() {
+    Random random = new Random(3);
+    long kept = 0;
+    long total = 0;
+    for (int i = 0; i < 100; i++) {
+      kept += grams.candidates(NameForm.of(SyntheticList.query(random, entries)), 90).cardinality();
+      total += grams.variantCount();
+    }
+    assertTrue(kept * 10 < total, "kept " + kept + " of " + total);
+  }
+
+  @Test
+  void lengthBoundNeverUnderestimatesTheScore() {
+    Random random = new Random(5);
+    long pruned = 0;
+    for (int i = 0; i < 100; i++) {
+      NameForm query = NameForm.of(SyntheticList.query(random, entries));
+      for (int v = 0; v < grams.variantCount(); v++) {
+        NameForm name = grams.getVariant(v);
+        int bound = name.maxScore(query);
+        assertTrue(name.score(query) <= bound, "'" + name.getOriginal() + "' against '" + query.getOriginal() + "'");
+        if (bound < 90)
+          pruned++;
+      }
+    }
+    assertTrue(pruned > 0);
+  }
+
+  /**
+   * tokenSortRatio of the query against every name the search used to try, per entry: the name,
+   * its comma parts and the alt names.
+   */
+  private static int[][] bruteForceScores(String name) {
+    int[][] scores = new int[entries.size()][];
+    for (int e = 0; e < entries.size(); e++) {
+      Entry entry = entries.get(e);
+      List<String> variants = new ArrayList<>();
+      variants.add(entry.getName());
+      for (String part : entry.getName().split(","))
+        variants.add(part);
+      if (entry.getAlt_names() != null)
+        variants.addAll(entry.getAlt_names());
+
+      scores[e] = new int[variants.size()];
+      for (int v = 0; v < variants.size(); v++)
+        scores[e][v] = FuzzySearch.tokenSortRatio(variants.get(v), name);
+    }
+    return scores;
+  }
+
+  /**
+   * The search as it ran before the index, keeping the first score reaching the threshold.
+   */
+  private static List<String> bruteForce(int[][] scores, int minimumScore) {
+    List<String> matches = new ArrayList<>();
+    for (int e = 0; e < scores.length; e++) {
+      for (int score : scores[e]) {
+        if (score >= minimumScore) {
+          matches.add(entries.get(e).getEntity_number() + ":" + score);
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+
+  private static List<String> indexed(NameForm query, BitSet candidates, int minimumScore) {
+    List<String> matches = new ArrayList<>();
+    List<IndexedEntry> indexedEntries = grams.getNames().getEntries();
+    for (int e = 0; e < indexedEntries.size(); e++) {
+      for (int v = grams.firstVariant(e); v < grams.firstVariant(e + 1); v++) {
+        if (!candidates.get(v))
+          continue;
+        int score = grams.getVariant(v).score(query);
+        if (score >= minimumScore) {
+          matches.add(indexedEntries.get(e).getEntry().getEntity_number() + ":" + score);
+          break;
+        }
+      }
+    }
+    return matches;
+  }
+}
@@ -0,0 +1,106 @@
+package com.soundcu.ofac.search;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.services.EntryBuilder;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import lombok.extern.slf4j.Slf4j;
+import me.xdrop.fuzzywuzzy.FuzzySearch;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest
+@Slf4j
+public class NameScorerTest {
+  private static final String[] ODD_NAMES = {"", " ", "!!!", "a", "A B", "b a", "José Müller-Lüdenscheidt",
+      "ИВАНОВ Иван", "محمد علي", "O'NEIL, Sean", "1234 5678", "aaaaaaaaaaaaaaaaaaaa", "ab ab ab ab",
+      "Abcdefghij Klmnopqrst Uvwxyzabcd Efghijklmn Opqrstuvwx Yzabcdefg",
+      "Abcdefghij Klmnopqrst Uvwxyzabcd Efghijklmn Opqrstuvwx Yzabcdefgh",
+      "Abcdefghij Klmnopqrst Uvwxyzabcd Efghijklmn Opqrstuvwx Yzabcdefghi"};
+
+  @Autowired
+  private EntryBuilder entryBuilder;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  public void testScorersMatchFuzzyWuzzyOnTheFullList() {
+    GramIndex grams = entryBuilder.getSnapshot().getGrams();
+    List<NameForm> queries = queries(entryBuilder.getSnapshot().getEntries(), 40, 17);
+    long compared = 0;
+    for (NameForm query : queries) {
+      for (int v = 0; v < grams.variantCount(); v++) {
+        assertParity(grams.getVariant(v), query);
+        compared++;
+      }
+    }
+    logger.info("compared " + compared + " scores");
+  }
+
+  @Test
+  public void testScorersMatchFuzzyWuzzyOnNearMisses() {
+    List<Entry> entries = SyntheticList.entries(1000, 17);
+    GramIndex grams = GramIndex.build(NameIndex.build(entries, objectMapper));
+    for (NameForm query : queries(entries, 100, 23)) {
+      for (int v = 0; v < grams.variantCount(); v++)
+        assertParity(grams.getVariant(v), query);
+    }
+    for (String a : ODD_NAMES) {
+      for (String b : ODD_NAMES)
+        assertParity(NameForm.of(a), NameForm.of(b));
+    }
+  }
+
+  @Test
+  public void testVectorScorerMatchesScoringOneNameAtATime() {
+    NameScorer vector = NameScorer.of("bitparallel", true);
+    assumeTrue(vector != BitParallelScorer.INSTANCE, "built without -P vector, or jdk.incubator.vector is not available");
+
+    List<Entry> entries = SyntheticList.entries(1000, 29);
+    GramIndex grams = GramIndex.build(NameIndex.build(entries, objectMapper));
+    for (NameForm query : queries(entries, 100, 31)) {
+      for (int minimumScore : new int[] {0, 60, 90}) {
+        BitSet candidates = grams.candidates(query, minimumScore);
+        CandidateScores scores = vector.scoreAll(grams, candidates, query, minimumScore);
+        if (query.getSorted().length() > 64) {
+          assertNull(scores);
+          continue;
+        }
+        assertEquals(candidates.cardinality(), scores.size());
+        for (int v = candidates.nextSetBit(0); v >= 0; v = candidates.nextSetBit(v + 1)) {
+          NameForm name = grams.getVariant(v);
+          if (name.maxScore(query) >= minimumScore)
+            assertEquals(LcsScorer.INSTANCE.score(name, query), scores.get(v),
+                "'" + name.getOriginal() + "' against '" + query.getOriginal() + "'");
+        }
+      }
+    }
+  }
+
+  private static void assertParity(NameForm name, NameForm query) {
+    int expected = FuzzySearch.tokenSortRatio(name.getOriginal(), query.getOriginal());
+    String pair = "'" + name.getOriginal() + "' against '" + query.getOriginal() + "'";
+    assertEquals(expected, FuzzyWuzzyScorer.INSTANCE.score(name, query), pair);
+    assertEquals(expected, LcsScorer.INSTANCE.score(name, query), pair);
+    assertEquals(expected, BitParallelScorer.INSTANCE.score(name, query), pair);
+  }
+
+  private static List<NameForm> queries(List<Entry> entries, int count, long seed) {
+    Random random = new Random(seed);
+    List<NameForm> queries = new ArrayList<>();
+    for (int i = 0; i < count; i++)
+      queries.add(NameForm.of(SyntheticList.query(random, entries)));
+    for (String name : ODD_NAMES)
+      queries.add(NameForm.of(name));
+    return queries;
+  }
+}
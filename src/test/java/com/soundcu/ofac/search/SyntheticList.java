@@ -0,0 +1,112 @@
+package com.soundcu.ofac.search;
+
+import com.soundcu.ofac.model.Entry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates a reproducible screening list shaped like the consolidated list, so index tests do not
+ * depend on the bundled list file.
+ */
+public final class SyntheticList {
+  private static final String[] SYLLABLES = {
+      "al", "an", "ar", "ba", "bek", "da", "di", "el", "fa", "ha", "ib", "ka", "kh", "li", "ma", "mo",
+      "na", "no", "ov", "ra", "ri", "sa", "sh", "ta", "ul", "va", "yu", "za", "zh", "ez", "ou", "ich"
+  };
+  private static final String[] WORDS = {
+      "trading", "company", "limited", "llc", "bank", "shipping", "group", "international", "credit",
+      "cooperative", "industrial", "of", "the", "and"
+  };
+  private static final String[] TYPES = {"Individual", "Entity", "Vessel"};
+  private static final String[] SOURCES = {
+      "Specially Designated Nationals (SDN) - Treasury Department",
+      "Entity List (EL) - Bureau of Industry and Security",
+      "Nonproliferation Sanctions (ISN) - State Department"
+  };
+
+  private SyntheticList() {
+  }
+
+  public static List<Entry> entries(int size, long seed) {
+    Random random = new Random(seed);
+    List<Entry> entries = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      Entry entry = new Entry();
+      String type = TYPES[random.nextInt(TYPES.length)];
+      entry.setType(type);
+      entry.setSource(SOURCES[random.nextInt(SOURCES.length)]);
+      entry.setEntity_number(String.valueOf(10000 + i));
+      entry.setName(name(random, type));
+
+      int altCount = random.nextInt(4);
+      if (altCount > 0) {
+        List<String> altNames = new ArrayList<>();
+        for (int j = 0; j < altCount; j++)
+          altNames.add(name(random, type));
+        entry.setAlt_names(altNames);
+      }
+      entries.add(entry);
+    }
+    return entries;
+  }
+
+  /**
+   * A name similar to one on the list: tokens dropped, swapped, or characters edited.
+   */
+  public static String query(Random random, List<Entry> entries) {
+    Entry entry = entries.get(random.nextInt(entries.size()));
+    String name = entry.getAlt_names() != null && !entry.getAlt_names().isEmpty() && random.nextBoolean()
+        ? entry.getAlt_names().get(random.nextInt(entry.getAlt_names().size()))
+        : entry.getName();
+    StringBuilder query = new StringBuilder(name);
+    int edits = random.nextInt(4);
+    for (int i = 0; i < edits && query.length() > 1; i++) {
+      int at = random.nextInt(query.length());
+      switch (random.nextInt(3)) {
+        case 0:
+          query.deleteCharAt(at);
+          break;
+        case 1:
+          query.insert(at, SYLLABLES[random.nextInt(SYLLABLES.length)].charAt(0));
+          break;
+        default:
+          query.setCharAt(at, Character.toUpperCase(query.charAt(at)));
+      }
+    }
+    if (random.nextInt(5) == 0)
+      return name(random, "Individual");
+    return query.toString();
+  }
+
+  private static String name(Random random, String type) {
+    if ("Individual".equals(type)) {
+      String surname = word(random).toUpperCase();
+      String given = capitalize(word(random));
+      if (random.nextBoolean())
+        given += " " + capitalize(word(random));
+      return random.nextBoolean() ? surname + ", " + given : given + " " + surname;
+    }
+
+    StringBuilder name = new StringBuilder(word(random).toUpperCase());
+    int words = 1 + random.nextInt(4);
+    for (int i = 0; i < words; i++)
+      name.append(' ').append(WORDS[random.nextInt(WORDS.length)].toUpperCase());
+    if (random.nextInt(4) == 0)
+      name.append(", ").append(word(random).toUpperCase()).append(" BRANCH");
+    return name.toString();
+  }
+
+  private static String word(Random random) {
+    StringBuilder word = new StringBuilder();
+    int syllables = 1 + random.nextInt(4);
+    for (int i = 0; i < syllables; i++)
+      word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+    return word.toString();
+  }
+
+  private static String capitalize(String word) {
+    return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+  }
+}
@@ -0,0 +1,86 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Requestor;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Slf4j
+public class BatchScreenerTest {
+
+  @Autowired
+  private BatchScreener batchScreener;
+
+  @Autowired
+  private EntryBuilder entryBuilder;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  public void testNdjsonBatchStreamsOneLinePerItem() throws IOException {
+    String body = "{\"id\":\"a\",\"name\":\"Luciano BRUNETTI\"}\n"
+        + "{\"id\":\"b\",\"name\":\"Nobody In Particular Xyzzy\"}\n"
+        + "{\"id\":\"c\",\"birthdate\":\"1948\"}\n"
+        + "{\"name\":\"KARAMAY URBAN CREDIT COOPERATIVES\"}\n";
+    Map<String, JsonNode> results = screen(body);
+    logger.info("batch results " + results);
+
+    assertEquals(4, results.size());
+    assertTrue(results.get("a").get("confirmed_match").asBoolean());
+    assertEquals(entryBuilder.getSnapshot().getVersion(), results.get("a").get("list_version").asText());
+    assertEquals("user", results.get("a").get("search_performed_by").get("user_id").asText());
+    assertFalse(results.get("b").get("confirmed_match").asBoolean());
+    assertEquals(144, results.get("c").get("error").get("code").asInt());
+    assertTrue(results.get("3").get("confirmed_match").asBoolean());
+  }
+
+  @Test
+  public void testJsonArrayBatch() throws IOException {
+    Map<String, JsonNode> results = screen("[{\"id\":1,\"name\":\"Luciano BRUNETTI\"},{\"id\":2,\"name\":\"Luciano BRUNETTI\"}]");
+
+    assertEquals(2, results.size());
+    assertEquals(1, results.get("1").get("result").size());
+    assertEquals(1, results.get("2").get("result").size());
+  }
+
+  @Test
+  public void testUnreadableItemEndsTheBatchWithAnError() throws IOException {
+    Map<String, JsonNode> results = screen("{\"id\":\"a\",\"name\":\"Luciano BRUNETTI\"}\n{\"name\": oops}\n{\"id\":\"c\"}\n");
+
+    assertEquals(2, results.size());
+    assertTrue(results.get("a").get("confirmed_match").asBoolean());
+    assertEquals(141, results.get("1").get("error").get("code").asInt());
+  }
+
+  private Map<String, JsonNode> screen(String body) throws IOException {
+    BatchScreener.Items items = batchScreener.read(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)));
+    Requestor requestor = new Requestor();
+    requestor.setUser_id("user");
+    requestor.setUser_id_type("type");
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    batchScreener.screen(items, entryBuilder.getSnapshot(), 90, null, null, 0, requestor, "/verify/ofac/batch", out);
+
+    Map<String, JsonNode> results = new HashMap<>();
+    for (String line : out.toString(StandardCharsets.UTF_8).split("\n")) {
+      JsonNode result = objectMapper.readTree(line);
+      results.put(result.get("id").asText(), result);
+    }
+    return results;
+  }
+}
@@ -1,12 +1,27 @@
 package com.soundcu.ofac.services;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.exceptions.BadRequestException;
 import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.Id;
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.model.SourceMetaData;
+import com.soundcu.ofac.search.IndexedEntry;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import com.soundcu.ofac.search.SyntheticList;
 import java.io.IOException;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
+import java.util.Random;
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
+import me.xdrop.fuzzywuzzy.FuzzySearch;
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.junit.jupiter.api.Test;
@@ -14,6 +29,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @SpringBootTest
 @Slf4j
@@ -25,6 +43,12 @@ public class EntryServiceTest {
   @Autowired
   private EntryService entryService;
 
+  @Autowired
+  private ScreeningService screeningService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
   private final Integer minimumScore = 90;
 
 
@@ -34,10 +58,10 @@ public class EntryServiceTest {
     String entityString = this.parseForm(entity);
     logger.info(entityString);
     JSONObject entityObj = new JSONObject(entityString);
-    List<Entry> entries = entryService.search(minimumScore, entityObj);
+    List<Match> entries = entryService.search(minimumScore, entityObj);
     logger.info("entries found " + entries.size());
     assertEquals(1, entries.size());
-    Entry entry = entries.get(0);
+    Entry entry = entries.get(0).getEntry();
     assertEquals(1, entry.getDates_of_birth().size());
     assertEquals("1988-08-30", entry.getDates_of_birth().get(0));
   }
@@ -48,7 +72,7 @@ public class EntryServiceTest {
     String entityString = this.parseForm(entity);
     logger.info(entityString);
     JSONObject entityObj = new JSONObject(entityString);
-    List<Entry> entries = entryService.search(minimumScore, entityObj);
+    List<Match> entries = entryService.search(minimumScore, entityObj);
     logger.info("entries found " + entries.size());
     assertEquals(1, entries.size());
   }
@@ -61,13 +85,194 @@ public class EntryServiceTest {
     String entityString = this.parseForm(entity);
     logger.info(entityString);
     JSONObject entityObj = new JSONObject(entityString);
-    List<Entry> entries = entryService.search(minimumScore, entityObj);
+    List<Match> entries = entryService.search(minimumScore, entityObj);
     assertEquals(1, entries.size());
-    Entry entry = entries.get(0);
+    Entry entry = entries.get(0).getEntry();
     assertEquals(1, entry.getDates_of_birth().size());
     assertEquals("1948", entry.getDates_of_birth().get(0));
   }
 
+  @Test
+  public void testMaxResultsKeepsTheBestRankedMatches() throws JSONException {
+    List<Entry> list = SyntheticList.entries(2000, 15);
+    ListSnapshot snapshot = ListSnapshot.build("ranking", list, Collections.emptyList(), objectMapper);
+    Random random = new Random(15);
+    int limited = 0;
+    for (int i = 0; i < 50; i++) {
+      ScreeningQuery query = ScreeningQuery.of(new JSONObject().put("name", SyntheticList.query(random, list)));
+      List<Match> all = entryService.search(snapshot, 60, query, null, null, 0);
+      for (int k = 1; k < all.size(); k++) {
+        int previous = all.get(k - 1).getScore();
+        int score = all.get(k).getScore();
+        assertTrue(previous > score || previous == score && list.indexOf(all.get(k - 1).getEntry()) < list.indexOf(all.get(k).getEntry()),
+            "results are ranked by score, then list order");
+      }
+
+      for (int maxResults : new int[] {1, 3, 10}) {
+        List<Match> top = entryService.search(snapshot, 60, query, null, null, maxResults);
+        List<Match> expected = all.subList(0, Math.min(maxResults, all.size()));
+        assertEquals(expected.size(), top.size());
+        for (int k = 0; k < top.size(); k++) {
+          assertTrue(expected.get(k).getEntry() == top.get(k).getEntry());
+          assertEquals(expected.get(k).getScore(), top.get(k).getScore());
+          assertEquals(expected.get(k).getMatched_name(), top.get(k).getMatched_name());
+        }
+        if (all.size() > maxResults)
+          limited++;
+      }
+    }
+    logger.info("queries cut by max_results " + limited);
+    assertTrue(limited > 0);
+  }
+
+  @Test
+  public void testMaxResultsKeepsTheBestRankedMatchesWithSecondaryFields() throws JSONException {
+    Entry named = new Entry();
+    named.setEntity_number("1");
+    named.setName("Luciano BRUNETTI");
+    Id id = new Id();
+    id.setNumber("12345");
+    Entry identified = new Entry();
+    identified.setEntity_number("2");
+    identified.setName("KARAMAY URBAN CREDIT");
+    identified.setIds(List.of(id));
+    Entry born = new Entry();
+    born.setEntity_number("3");
+    born.setName("Aziz DWEIK");
+    born.setDates_of_birth(List.of("1948"));
+    ListSnapshot snapshot = ListSnapshot.build("fields", List.of(named, identified, born), Collections.emptyList(), objectMapper);
+
+    for (JSONObject request : List.of(new JSONObject().put("name", "Luciano BRUNETTI").put("id_number", "12345"),
+        new JSONObject().put("name", "Luciano BRUNETTI").put("birthdate", "1948"),
+        new JSONObject().put("name", "Luciano BRUNETTI").put("id_number", "12345").put("birthdate", "1948"))) {
+      ScreeningQuery query = ScreeningQuery.of(request);
+      List<String> all = describe(entryService.search(snapshot, 90, query, null, null, 0));
+      assertTrue(all.size() > 1, request.toString());
+      assertTrue(!all.get(0).startsWith("1:"), "secondary field matches rank ahead of a perfect name score " + all);
+      for (int maxResults = 1; maxResults <= all.size(); maxResults++)
+        assertEquals(all.subList(0, maxResults), describe(entryService.search(snapshot, 90, query, null, null, maxResults)),
+            request + " top " + maxResults);
+    }
+  }
+
+  @Test
+  public void testSearchMatchesScoringEveryName() throws JSONException {
+    List<Entry> list = SyntheticList.entries(2000, 21);
+    ListSnapshot snapshot = ListSnapshot.build("bounds", list, Collections.emptyList(), objectMapper);
+    Random random = new Random(21);
+    for (int i = 0; i < 50; i++) {
+      String name = SyntheticList.query(random, list);
+      ScreeningQuery query = ScreeningQuery.of(new JSONObject().put("name", name));
+      for (int score : new int[] {60, 80, 90}) {
+        assertEquals(scoreEveryName(list, name, score), describe(entryService.search(snapshot, score, query, null, null, 0)),
+            "'" + name + "' at " + score);
+      }
+    }
+  }
+
+  @Test
+  public void testTypedAndSourcedSearchesMatchFilteringTheFullSearch() throws JSONException {
+    List<Entry> list = SyntheticList.entries(2000, 33);
+    ListSnapshot snapshot = ListSnapshot.build("partitions", list, Collections.emptyList(), objectMapper);
+    List<List<String>> filters = Arrays.asList(null, List.of("sdn"),
+        List.of("entity list (el) - bureau of industry and security", "isn"));
+    Random random = new Random(33);
+    for (int i = 0; i < 30; i++) {
+      ScreeningQuery query = ScreeningQuery.of(new JSONObject().put("name", SyntheticList.query(random, list)));
+      List<Match> all = entryService.search(snapshot, 70, query, null, null, 0);
+      for (String type : new String[] {null, "Individual", "vessel", "Aircraft"}) {
+        for (List<String> sources : filters) {
+          List<String> expected = new ArrayList<>();
+          for (Match match : all) {
+            Entry entry = match.getEntry();
+            if ((type == null || type.equalsIgnoreCase(entry.getType())) && (sources == null
+                || sources.stream().anyMatch((source) -> entry.getSource().toLowerCase().contains(source))))
+              expected.add(describe(match));
+          }
+
+          assertEquals(expected, describe(entryService.search(snapshot, 70, query, null, type, sources, 0)), type + " " + sources);
+          assertEquals(expected.subList(0, Math.min(3, expected.size())),
+              describe(entryService.search(snapshot, 70, query, null, type, sources, 3)), type + " " + sources + " top 3");
+        }
+      }
+    }
+  }
+
+  /**
+   * The matches as entity_number:score:matched_name, in order.
+   */
+  static List<String> describe(List<Match> matches) {
+    List<String> described = new ArrayList<>();
+    for (Match match : matches)
+      described.add(describe(match));
+    return described;
+  }
+
+  private static String describe(Match match) {
+    return match.getEntry().getEntity_number() + ":" + match.getScore() + ":" + match.getMatched_name();
+  }
+
+  @Test
+  public void testUnknownSourceIsRejected() {
+    ListSnapshot snapshot = ListSnapshot.build("sources", SyntheticList.entries(10, 1), Collections.emptyList(), objectMapper);
+    assertEquals(List.of("el", "sdn"), screeningService.sources(snapshot, " SDN, el ,"));
+    assertNull(screeningService.sources(snapshot, null));
+    assertThrows(BadRequestException.class, () -> screeningService.sources(snapshot, "SDN,OFAC"));
+  }
+
+  @Test
+  public void testSourcesUsedCannotBeChangedThroughAResponse() {
+    List<Entry> list = SyntheticList.entries(10, 2);
+    SourceMetaData metadata = new SourceMetaData();
+    metadata.setSource(list.get(0).getSource());
+    ListSnapshot snapshot = ListSnapshot.build("sources", list, List.of(metadata), objectMapper);
+    IndexedEntry entry = snapshot.getNames().getEntries().get(0);
+    List<SourceMetaData> used = snapshot.sourcesUsed(List.of(new Match(entry.getEntry(), entry.getJson(), 100, "", List.of("name"))));
+
+    assertEquals(List.of(metadata), used);
+    assertThrows(UnsupportedOperationException.class, () -> used.add(new SourceMetaData()));
+  }
+
+  /**
+   * Every entry whose best tokenSortRatio over its name, comma parts and alt names reaches the
+   * score, ranked by score then list order, with no pruning at all.
+   */
+  private static List<String> scoreEveryName(List<Entry> list, String name, int minimumScore) {
+    List<int[]> ranked = new ArrayList<>();
+    List<String> matched = new ArrayList<>();
+    for (int e = 0; e < list.size(); e++) {
+      Entry entry = list.get(e);
+      List<String> variants = new ArrayList<>();
+      variants.add(entry.getName());
+      variants.addAll(Arrays.asList(entry.getName().split(",")));
+      if (entry.getAlt_names() != null)
+        variants.addAll(entry.getAlt_names());
+
+      int best = -1;
+      String bestName = null;
+      for (String variant : variants) {
+        int score = FuzzySearch.tokenSortRatio(variant, name);
+        if (score >= minimumScore && score > best) {
+          best = score;
+          bestName = variant;
+        }
+      }
+      if (bestName != null) {
+        ranked.add(new int[] {best, e});
+        matched.add(entry.getEntity_number() + ":" + best + ":" + bestName);
+      }
+    }
+
+    List<Integer> order = new ArrayList<>();
+    for (int k = 0; k < ranked.size(); k++)
+      order.add(k);
+    order.sort(Comparator.comparingInt((Integer k) -> -ranked.get(k)[0]).thenComparingInt(k -> ranked.get(k)[1]));
+    List<String> expected = new ArrayList<>();
+    for (int k : order)
+      expected.add(matched.get(k));
+    return expected;
+  }
+
   private String parseForm(String body) throws JSONException {
     JSONObject entity = new JSONObject();
     String[] pairs = body.split("&");
@@ -0,0 +1,133 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.exceptions.ServiceException;
+import com.soundcu.ofac.model.JobStatus;
+import com.soundcu.ofac.model.Requestor;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "jobs.dir=target/jobs-test")
+@Slf4j
+public class JobServiceTest {
+
+  @Autowired
+  private JobService jobService;
+
+  @Autowired
+  private EntryBuilder entryBuilder;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  public void testCsvJobWritesHitsAndErrors() throws Exception {
+    String csv = "id,name,birthdate\r\n"
+        + "m1,\"BRUNETTI, Luciano\",\r\n"
+        + "m2,Nobody In Particular Xyzzy,\r\n"
+        + "m3,Someone,1948\r\n"
+        + "m4,\"KARAMAY URBAN \"\"CREDIT\"\"\nCOOPERATIVES\",\r\n";
+    JobStatus submitted = jobService.submit("text/csv", stream(csv), 90, null, requestor());
+    assertEquals(4, submitted.getRows_total());
+
+    JobStatus status = await(submitted.getId());
+    logger.info("job status " + objectMapper.writeValueAsString(status));
+    assertEquals(JobStatus.State.COMPLETED, status.getState());
+    assertEquals(4, status.getRows_done());
+    assertEquals(2, status.getHits());
+    assertEquals(1, status.getErrors());
+    assertEquals(entryBuilder.getSnapshot().getVersion(), status.getList_version());
+
+    List<String> lines = Files.readAllLines(jobService.getResult(submitted.getId()));
+    assertEquals(3, lines.size());
+    assertTrue(lines.get(0).startsWith("{\"id\":\"m1\""));
+    assertEquals(144, objectMapper.readTree(lines.get(1)).get("error").get("code").asInt());
+    assertEquals("KARAMAY URBAN \"CREDIT\"\nCOOPERATIVES", objectMapper.readTree(lines.get(2)).get("search_name").asText());
+  }
+
+  @Test
+  public void testResumeSkipsCheckpointedRows() throws Exception {
+    String id = UUID.randomUUID().toString();
+    Path dir = Files.createDirectories(jobService.getDirectory(id));
+    Files.writeString(dir.resolve("input"), "{\"name\":\"Luciano BRUNETTI\"}\n"
+        + "{\"name\":\"Luciano BRUNETTI\"}\n"
+        + "{\"id\":\"last\",\"name\":\"Luciano BRUNETTI\"}\n");
+    Files.writeString(dir.resolve("result.ndjson"), "{\"id\":\"1\"}\n{\"id\":\"partial");
+
+    JobStatus checkpoint = new JobStatus();
+    checkpoint.setId(id);
+    checkpoint.setState(JobStatus.State.RUNNING);
+    checkpoint.setFormat("NDJSON");
+    checkpoint.setMinimum_score(90);
+    checkpoint.setSearch_performed_by(requestor());
+    checkpoint.setList_version(entryBuilder.getSnapshot().getVersion());
+    checkpoint.setRows_total(3);
+    checkpoint.setRows_done(2);
+    checkpoint.setHits(1);
+    checkpoint.setResult_bytes("{\"id\":\"1\"}\n".length());
+    checkpoint.setSubmitted_at(Instant.now().toString());
+    objectMapper.writeValue(dir.resolve("job.json").toFile(), checkpoint);
+
+    jobService.resume();
+    JobStatus status = await(id);
+    assertEquals(JobStatus.State.COMPLETED, status.getState());
+    assertEquals(3, status.getRows_done());
+    assertEquals(2, status.getHits());
+
+    List<String> lines = Files.readAllLines(jobService.getResult(id));
+    assertEquals(2, lines.size());
+    assertEquals("{\"id\":\"1\"}", lines.get(0));
+    assertTrue(lines.get(1).startsWith("{\"id\":\"last\""));
+  }
+
+  @Test
+  public void testJobsNeedAPersistentDirectory() throws Exception {
+    JobService unconfigured = new JobService();
+    ReflectionTestUtils.setField(unconfigured, "directory", "");
+    unconfigured.init();
+    ServiceException refused = assertThrows(ServiceException.class,
+        () -> unconfigured.submit("text/csv", stream("name\r\nSomeone\r\n"), 90, null, requestor()));
+    assertEquals(HttpStatus.SERVICE_UNAVAILABLE, refused.getStatus());
+    unconfigured.shutdown();
+
+    JobService temporary = new JobService();
+    ReflectionTestUtils.setField(temporary, "directory", System.getProperty("java.io.tmpdir") + "/ofac-jobs");
+    assertThrows(IllegalStateException.class, temporary::init);
+  }
+
+  private JobStatus await(String id) throws InterruptedException {
+    for (int i = 0; i < 300; i++) {
+      JobStatus status = jobService.getStatus(id);
+      if (status.getState() == JobStatus.State.COMPLETED || status.getState() == JobStatus.State.FAILED)
+        return status;
+      Thread.sleep(100);
+    }
+    return jobService.getStatus(id);
+  }
+
+  private static ByteArrayInputStream stream(String body) {
+    return new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8));
+  }
+
+  private static Requestor requestor() {
+    Requestor requestor = new Requestor();
+    requestor.setUser_id("user");
+    requestor.setUser_id_type("type");
+    return requestor;
+  }
+}
@@ -0,0 +1,143 @@
+package com.soundcu.ofac.services;
+
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ListFetcherTest {
+  private static final String LIST = "{\"sources_used\":[],\"results\":[{\"name\":\"BRUNETTI, Luciano\"}]}";
+
+  private HttpServer server;
+  private URI uri;
+  private final List<String> ifNoneMatch = new ArrayList<>();
+  private final List<String> acceptEncoding = new ArrayList<>();
+  private String body = LIST;
+  private String etag = "\"v1\"";
+  private boolean honorConditionals = true;
+
+  @BeforeEach
+  void startServer() throws IOException {
+    server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+    server.createContext("/consolidated.json", (exchange) -> {
+      String condition = exchange.getRequestHeaders().getFirst("If-None-Match");
+      ifNoneMatch.add(condition);
+      acceptEncoding.add(exchange.getRequestHeaders().getFirst("Accept-Encoding"));
+      if (honorConditionals && etag.equals(condition)) {
+        exchange.sendResponseHeaders(304, -1);
+        exchange.close();
+        return;
+      }
+
+      byte[] gzipped = gzip(body);
+      exchange.getResponseHeaders().add("ETag", etag);
+      exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+      exchange.sendResponseHeaders(200, gzipped.length);
+      try (OutputStream out = exchange.getResponseBody()) {
+        out.write(gzipped);
+      }
+    });
+    server.start();
+    uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/consolidated.json");
+  }
+
+  @AfterEach
+  void stopServer() {
+    server.stop(0);
+  }
+
+  @Test
+  void sendsValidatorsAndSkipsNotModified() throws Exception {
+    ListFetcher fetcher = new ListFetcher(HttpClient.newHttpClient(), 1024 * 1024);
+
+    ListFetcher.Fetched first = fetcher.fetch(uri, null);
+    assertNotNull(first);
+    assertEquals(LIST, read(first));
+    fetcher.accept(first);
+    first.discard();
+
+    assertNull(fetcher.fetch(uri, first.getVersion()));
+    assertNull(ifNoneMatch.get(0));
+    assertEquals("\"v1\"", ifNoneMatch.get(1));
+    assertEquals("gzip", acceptEncoding.get(0));
+  }
+
+  @Test
+  void skipsUnchangedContentWhenServerIgnoresValidators() throws Exception {
+    ListFetcher fetcher = new ListFetcher(HttpClient.newHttpClient(), 1024 * 1024);
+    honorConditionals = false;
+
+    ListFetcher.Fetched first = fetcher.fetch(uri, null);
+    fetcher.accept(first);
+    first.discard();
+
+    etag = "\"v2\"";
+    assertNull(fetcher.fetch(uri, first.getVersion()));
+  }
+
+  @Test
+  void fetchesChangedContent() throws Exception {
+    ListFetcher fetcher = new ListFetcher(HttpClient.newHttpClient(), 1024 * 1024);
+
+    ListFetcher.Fetched first = fetcher.fetch(uri, null);
+    fetcher.accept(first);
+    first.discard();
+
+    body = LIST.replace("Luciano", "Lucio");
+    etag = "\"v2\"";
+    ListFetcher.Fetched second = fetcher.fetch(uri, first.getVersion());
+    assertNotNull(second);
+    assertEquals(body, read(second));
+    second.discard();
+  }
+
+  @Test
+  void keepsFetchingUntilADownloadIsAccepted() throws Exception {
+    ListFetcher fetcher = new ListFetcher(HttpClient.newHttpClient(), 1024 * 1024);
+
+    fetcher.fetch(uri, null).discard();
+    ListFetcher.Fetched again = fetcher.fetch(uri, null);
+    assertNotNull(again);
+    again.discard();
+    assertNull(ifNoneMatch.get(1));
+  }
+
+  @Test
+  void refusesADecompressedListOverTheLimit() throws Exception {
+    ListFetcher fetcher = new ListFetcher(HttpClient.newHttpClient(), 1024 * 1024);
+    body = LIST + " ".repeat(2 * 1024 * 1024);
+
+    assertThrows(IOException.class, () -> fetcher.fetch(uri, null));
+  }
+
+  private static String read(ListFetcher.Fetched fetched) throws IOException {
+    try (InputStream in = fetched.open()) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    }
+  }
+
+  private static byte[] gzip(String value) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+      out.write(value.getBytes(StandardCharsets.UTF_8));
+    }
+    return bytes.toByteArray();
+  }
+}
@@ -0,0 +1,149 @@
+package com.soundcu.ofac.services;
+
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.read.ListAppender;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+@SpringBootTest(properties = {"logger.body.max-bytes=40", "logger.async.capacity=4", "logger.async.policy=drop"})
+public class OfacLoggerTest {
+
+  @Autowired
+  private OfacLogger ofacLogger;
+
+  @Autowired
+  private ResponseRenderer renderer;
+
+  @Autowired
+  private SearchMetrics metrics;
+
+  @Autowired
+  private MeterRegistry registry;
+
+  @Value("${logger.name}")
+  private String loggerName;
+
+  private final ListAppender<ILoggingEvent> appender = new ListAppender<>();
+
+  @BeforeEach
+  void attach() {
+    appender.start();
+    ((Logger) LoggerFactory.getLogger(loggerName)).addAppender(appender);
+  }
+
+  @AfterEach
+  void detach() {
+    ((Logger) LoggerFactory.getLogger(loggerName)).detachAppender(appender);
+  }
+
+  @Test
+  void responsesAreWrittenOffTheRequestThreadAndCut() throws JSONException {
+    ResponseEntity<byte[]> response = ResponseEntity.ok().header("X-Test", "a", "b")
+        .body(renderer.render(Map.of("names", List.of("x".repeat(100)))));
+    ofacLogger.logResponse(response.getHeaders(), response.getBody(), "/verify/ofac");
+
+    JSONObject message = new JSONObject(awaitMessage("/verify/ofac").getFormattedMessage());
+    assertEquals("OFAC", message.getString("entityName"));
+    assertEquals("RESPONSE", message.getString("messageType"));
+    assertEquals("/verify/ofac", message.getString("requestPath"));
+    assertEquals("X-Test: ab", new JSONArray(message.getString("requestHeaders")).getString(0));
+    assertEquals(40, message.getString("messageBody").length());
+    assertTrue(message.getString("messageBody").startsWith("{\"names\":[\"xxx"));
+    assertTrue(message.getBoolean("messageBodyTruncated"));
+    assertTrue(message.getString("timestamp").matches("\\d{4}-\\d{2}-\\d{2}T\\d{2}:\\d{2}:\\d{2}"));
+    assertFalse(Thread.currentThread().getName().equals(awaitMessage("/verify/ofac").getThreadName()));
+  }
+
+  @Test
+  void serializedResponsesAreLoggedAsSentAndCutBetweenCharacters() throws JSONException {
+    byte[] body = ("{\"search_name\":\"" + "\u00e9".repeat(30) + "\"}").getBytes(StandardCharsets.UTF_8);
+    ofacLogger.logResponse(new HttpHeaders(), body, "/verify/ofac");
+
+    JSONObject message = new JSONObject(awaitMessage("/verify/ofac").getFormattedMessage());
+    String logged = message.getString("messageBody");
+    assertEquals("{\"search_name\":\"" + "\u00e9".repeat(12), logged);
+    assertTrue(message.getBoolean("messageBodyTruncated"));
+  }
+
+  @Test
+  void aFullQueueDropsInsteadOfBlocking() {
+    long start = System.nanoTime();
+    for (int i = 0; i < 1000; i++)
+      ofacLogger.logBatchResponse("/verify/ofac/batch", i, 0);
+    assertTrue(System.nanoTime() - start < TimeUnit.SECONDS.toNanos(5));
+    awaitMessage("/verify/ofac/batch");
+  }
+
+  @Test
+  void shutdownWritesEveryQueuedMessageAndDropsLaterOnes() throws InterruptedException {
+    OfacLogger closing = new OfacLogger();
+    ReflectionTestUtils.setField(closing, "loggerName", loggerName);
+    ReflectionTestUtils.setField(closing, "capacity", 8);
+    ReflectionTestUtils.setField(closing, "policy", "block");
+    ReflectionTestUtils.setField(closing, "sampleRate", 1.0);
+    ReflectionTestUtils.setField(closing, "metrics", metrics);
+    closing.init();
+    for (int i = 0; i < 100; i++)
+      closing.logBatchResponse("/verify/ofac/closing", i, 0);
+    closing.shutdown();
+    assertEquals(100, count("/verify/ofac/closing"));
+
+    double dropped = registry.counter("ofac.log.dropped").count();
+    closing.logBatchResponse("/verify/ofac/closed", 0, 0);
+    assertEquals(dropped + 1, registry.counter("ofac.log.dropped").count());
+    assertEquals(0, count("/verify/ofac/closed"));
+  }
+
+  private int count(String path) {
+    String requestPath = "\"requestPath\":\"" + path + "\"";
+    synchronized (appender) {
+      return (int) appender.list.stream().filter((event) -> event.getFormattedMessage().contains(requestPath)).count();
+    }
+  }
+
+  /**
+   * The first message logged for the path; messages of other tests may still be draining.
+   */
+  private ILoggingEvent awaitMessage(String path) {
+    String requestPath = "\"requestPath\":\"" + path + "\"";
+    long deadline = System.currentTimeMillis() + 5000;
+    while (System.currentTimeMillis() < deadline) {
+      synchronized (appender) {
+        for (ILoggingEvent event : appender.list) {
+          if (event.getFormattedMessage().contains(requestPath))
+            return event;
+        }
+      }
+      try {
+        TimeUnit.MILLISECONDS.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    fail("no message logged");
+    return null;
+  }
+}
@@ -0,0 +1,68 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.Id;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import com.soundcu.ofac.search.SyntheticList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static com.soundcu.ofac.services.EntryServiceTest.describe;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Every search large enough is scanned in parallel here, in small chunks; in a context of its own
+ * so no other test sees these settings.
+ */
+@SpringBootTest(properties = {"search.parallel.min-candidates=0", "search.parallel.chunk-entries=128"})
+public class ParallelSearchTest {
+
+  @Autowired
+  private EntryService entryService;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  public void testParallelSearchMatchesSequentialSearch() throws JSONException {
+    List<Entry> list = SyntheticList.entries(5000, 41);
+    for (int i = 0; i < list.size(); i += 50) {
+      Id id = new Id();
+      id.setNumber("ID" + i);
+      list.get(i).setIds(List.of(id));
+    }
+    ListSnapshot snapshot = ListSnapshot.build("parallel", list, Collections.emptyList(), objectMapper);
+    BitSet everything = new BitSet();
+    everything.set(0, list.size());
+
+    Random random = new Random(41);
+    List<ScreeningQuery> queries = new ArrayList<>();
+    for (int i = 0; i < 30; i++)
+      queries.add(ScreeningQuery.of(new JSONObject().put("name", SyntheticList.query(random, list))));
+    // names with the ID of another entry, so field matches held before the scan can come later in the list
+    for (int i = 0; i < 10; i++) {
+      Entry named = list.get(random.nextInt(list.size()));
+      queries.add(ScreeningQuery.of(new JSONObject().put("name", named.getName())
+          .put("id_number", "ID" + 50 * random.nextInt(list.size() / 50))));
+    }
+
+    for (int maxResults : new int[] {0, 1, 5}) {
+      for (ScreeningQuery query : queries) {
+        // a search within given positions never runs in parallel
+        List<String> sequential = describe(entryService.search(snapshot, 60, query, everything, null, maxResults));
+        assertEquals(sequential, describe(entryService.search(snapshot, 60, query, null, null, maxResults)),
+            query.getName() + " top " + maxResults);
+      }
+    }
+  }
+}
@@ -0,0 +1,120 @@
+package com.soundcu.ofac.services;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.soundcu.ofac.model.Entry;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.Subject;
+import com.soundcu.ofac.search.ListDiff;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = {"rescreen.enabled=true", "rescreen.dir=target/rescreen-test"})
+@Slf4j
+public class RescreenerTest {
+
+  @Autowired
+  private Rescreener rescreener;
+
+  @Autowired
+  private SubjectRegistry registry;
+
+  @Autowired
+  private ObjectMapper objectMapper;
+
+  @Test
+  public void testReloadRescreensSubjectsAgainstTheDelta() throws Exception {
+    ListSnapshot previous = ListSnapshot.build("v1", List.of(
+        entry("1", "PETROV, Ivan Sergeyevich"),
+        entry("2", "ORANGE TREE TRADING LLC"),
+        entry("3", "OLD HARBOR SHIPPING")), Collections.emptyList(), objectMapper);
+    ListSnapshot next = ListSnapshot.build("v2", List.of(
+        entry("1", "PETROV, Ivan Sergeyevich"),
+        entry("2", "ORANGE TREE TRADING COMPANY LLC"),
+        entry("4", "GONZALEZ, Maria Fernanda")), Collections.emptyList(), objectMapper);
+
+    ListDiff diff = ListDiff.between(previous, next);
+    assertEquals("{2}", diff.getAdded().toString());
+    assertEquals("{1}", diff.getChanged().toString());
+    assertEquals(1, diff.getRemoved().size());
+    assertEquals("3", diff.getRemoved().get(0).getEntity_number());
+
+    register("Maria Fernanda Gonzalez");
+    register("Ivan Sergeyevich Petrov");
+    register("Orange Tree Trading Company LLC");
+    // the same subject screened against another source only has nothing new to hear about
+    registry.record(ScreeningQuery.of(new JSONObject().put("name", "Orange Tree Trading Company LLC")), 90, null,
+        List.of("nonproliferation sanctions (isn) - state department"), null);
+
+    Path outbox = rescreener.getOutbox();
+    long before = Files.exists(outbox) ? Files.size(outbox) : 0;
+    rescreener.rescreen(new ListReloadedEvent(previous, next));
+
+    Map<String, JsonNode> hits = new HashMap<>();
+    String appended = new String(Files.readAllBytes(outbox)).substring((int) before);
+    assertEquals(2, appended.split("\n").length);
+    for (String line : appended.split("\n")) {
+      JsonNode hit = objectMapper.readTree(line);
+      hits.put(hit.get("subject").get("fields").get("name").asText(), hit);
+    }
+    logger.info("rescreening hits " + hits.keySet());
+
+    assertEquals(2, hits.size());
+    JsonNode added = hits.get("Maria Fernanda Gonzalez");
+    assertEquals("v2", added.get("list_version").asText());
+    assertEquals("v1", added.get("previous_list_version").asText());
+    assertEquals("4", added.get("result").get(0).get("entity_number").asText());
+    assertTrue(hits.containsKey("Orange Tree Trading Company LLC"));
+  }
+
+  @Test
+  public void testRegistryKeepsOnlySearchedFieldsAndWritesThemOffTheRequest() throws Exception {
+    JSONObject entity = new JSONObject().put("name", "Registry Fields Subject").put("city", "Seattle")
+        .put("ssn", "123-45-6789");
+    registry.record(ScreeningQuery.of(entity), 85, null, null, null);
+
+    Subject subject = registry.getSubjects().stream()
+        .filter((candidate) -> "Registry Fields Subject".equals(candidate.getFields().get("name")))
+        .findFirst().orElseThrow();
+    assertEquals(Map.of("name", "Registry Fields Subject", "ssn", "123-45-6789"), subject.getFields());
+    assertNotNull(subject.getScreened_at());
+
+    registry.flush();
+    Path file = registry.directory().resolve("registry.ndjson");
+    assertTrue(new String(Files.readAllBytes(file)).contains("Registry Fields Subject"));
+  }
+
+  private void register(String name) throws JSONException {
+    Requestor requestor = new Requestor();
+    requestor.setUser_id("user");
+    requestor.setUser_id_type("type");
+    registry.record(ScreeningQuery.of(new JSONObject().put("name", name)), 90, null, null, requestor);
+  }
+
+  private static Entry entry(String number, String name) {
+    Entry entry = new Entry();
+    entry.setEntity_number(number);
+    entry.setName(name);
+    entry.setSource("Specially Designated Nationals (SDN) - Treasury Department");
+    entry.setType(name.contains(",") ? "Individual" : "Entity");
+    entry.setAlt_names(new ArrayList<>());
+    return entry;
+  }
+}
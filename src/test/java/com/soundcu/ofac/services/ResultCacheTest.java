@@ -0,0 +1,110 @@
+package com.soundcu.ofac.services;
+
+import com.soundcu.ofac.model.Match;
+import com.soundcu.ofac.model.Requestor;
+import com.soundcu.ofac.model.Response;
+import com.soundcu.ofac.search.ListSnapshot;
+import com.soundcu.ofac.search.ScreeningQuery;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.extern.slf4j.Slf4j;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+@SpringBootTest
+@Slf4j
+public class ResultCacheTest {
+
+  @Autowired
+  private ScreeningService screeningService;
+
+  @Autowired
+  private ResultCache cache;
+
+  @Autowired
+  private EntryBuilder entryBuilder;
+
+  @Test
+  public void testRepeatedQueryIsServedFromCache() throws JSONException {
+    ListSnapshot snapshot = entryBuilder.getSnapshot();
+    cache.onReload(new ListReloadedEvent(snapshot, snapshot));
+    long hits = cache.getHits();
+    long misses = cache.getMisses();
+
+    Response first = screeningService.screen(snapshot, query("Luciano BRUNETTI"), 90, null, requestor("first"));
+    Response second = screeningService.screen(snapshot, query("brunetti,  LUCIANO"), 90, null, requestor("second"));
+
+    assertEquals(misses + 1, cache.getMisses());
+    assertEquals(hits + 1, cache.getHits());
+    assertSame(first.getResult(), second.getResult());
+    assertEquals(1, second.getResult().size());
+    assertEquals("brunetti,  LUCIANO", second.getSearch_name());
+    assertEquals("second", second.getSearch_performed_by().getUser_id());
+
+    Response otherScore = screeningService.screen(snapshot, query("Luciano BRUNETTI"), 95, null, requestor("third"));
+    assertNotSame(first.getResult(), otherScore.getResult());
+    assertEquals(misses + 2, cache.getMisses());
+  }
+
+  @Test
+  public void testReloadDropsTheCache() throws JSONException {
+    ListSnapshot snapshot = entryBuilder.getSnapshot();
+    screeningService.screen(snapshot, query("KARAMAY URBAN CREDIT COOPERATIVES"), 90, null, requestor("user"));
+
+    cache.onReload(new ListReloadedEvent(snapshot, snapshot));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testConcurrentIdenticalSearchesRunOnce() throws Exception {
+    int callers = 8;
+    long coalesced = cache.getCoalesced();
+    AtomicInteger searches = new AtomicInteger();
+    List<Match> result = Collections.emptyList();
+    ExecutorService pool = Executors.newFixedThreadPool(callers);
+    try {
+      List<Future<List<Match>>> futures = new ArrayList<>();
+      for (int i = 0; i < callers; i++) {
+        futures.add(pool.submit(() -> cache.get("single-flight-test", () -> {
+          searches.incrementAndGet();
+          // hold the lead until every other caller is waiting on it
+          long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+          while (cache.getCoalesced() - coalesced < callers - 1 && System.nanoTime() < deadline)
+            Thread.onSpinWait();
+          return result;
+        })));
+      }
+      for (Future<List<Match>> future : futures)
+        assertEquals(result, future.get(10, TimeUnit.SECONDS));
+    } finally {
+      pool.shutdownNow();
+    }
+
+    assertEquals(1, searches.get());
+    assertEquals(callers - 1, cache.getCoalesced() - coalesced);
+  }
+
+  private static ScreeningQuery query(String name) throws JSONException {
+    return ScreeningQuery.of(new JSONObject().put("name", name));
+  }
+
+  private static Requestor requestor(String userId) {
+    Requestor requestor = new Requestor();
+    requestor.setUser_id(userId);
+    requestor.setUser_id_type("type");
+    return requestor;
+  }
+}
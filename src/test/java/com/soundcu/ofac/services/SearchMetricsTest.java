@@ -0,0 +1,68 @@
+package com.soundcu.ofac.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.metrics.AutoConfigureMetrics;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@AutoConfigureMetrics
+public class SearchMetricsTest {
+
+  @Autowired
+  private TestRestTemplate rest;
+
+  @Autowired
+  private MeterRegistry registry;
+
+  @Test
+  void screeningRecordsEveryStageAndIsScraped() {
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_JSON);
+    headers.set("user_id", "metrics");
+    headers.set("user_id_type", "test");
+    ResponseEntity<String> screened = rest.postForEntity("/verify/ofac",
+        new HttpEntity<>("{\"name\":\"Luciano BRUNETTI\"}", headers), String.class);
+    assertEquals(HttpStatus.OK, screened.getStatusCode());
+
+    String scraped = rest.getForObject("/actuator/prometheus", String.class);
+    for (String stage : new String[] {"parse", "validate", "search", "response", "serialize", "log_request", "log_response"})
+      assertTrue(scraped.contains("ofac_request_stage_seconds_count{stage=\"" + stage + "\",}"), stage);
+    assertTrue(scraped.contains("ofac_request_stage_seconds_bucket{stage=\"search\""));
+    assertTrue(scraped.contains("ofac_search_names_count{outcome=\"pruned_by_index\",}"));
+    assertTrue(scraped.contains("ofac_list_entries "));
+    assertTrue(scraped.contains("ofac_cache_requests_total{result=\"misses\",}"));
+  }
+
+  @Test
+  void batchRequestsAreNotTimed() {
+    long before = stageCount();
+    HttpHeaders headers = new HttpHeaders();
+    headers.setContentType(MediaType.APPLICATION_NDJSON);
+    headers.set("user_id", "metrics");
+    headers.set("user_id_type", "test");
+    ResponseEntity<String> screened = rest.postForEntity("/verify/ofac/batch",
+        new HttpEntity<>("{\"id\":\"1\",\"name\":\"Luciano BRUNETTI\"}\n", headers), String.class);
+    assertEquals(HttpStatus.OK, screened.getStatusCode());
+    assertTrue(screened.getBody().contains("\"1\""));
+    assertEquals(before, stageCount());
+  }
+
+  private long stageCount() {
+    long count = 0;
+    for (Timer timer : registry.find("ofac.request.stage").timers())
+      count += timer.count();
+    return count;
+  }
+}
@@ -0,0 +1,90 @@
+package com.soundcu.ofac.search;
+
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.BitSet;
+
+/**
+ * The bit-parallel scorer run across SIMD lanes with the incubating Vector API: each lane holds
+ * the state of a different candidate name, all stepping against the same query masks, so one
+ * vector operation advances as many names as the CPU has lanes. Names shorter than the longest
+ * of their group read the empty mask once they run out, which leaves their lane unchanged.
+ * <p>
+ * Only compiled with the {@code vector} profile and needs {@code --add-modules jdk.incubator.vector}
+ * at run time; {@link NameScorer#of} falls back to {@link BitParallelScorer} when the class or the
+ * module is missing.
+ */
+public final class VectorScorer implements NameScorer {
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    @Override
+    public int score(NameForm name, NameForm query) {
+        return BitParallelScorer.INSTANCE.score(name, query);
+    }
+
+    /**
+     * Scores every candidate whose length bound reaches the minimum score, before and apart from
+     * the scan of {@code EntryService.search}. It therefore also scores names of inactive entries
+     * and of entries outside a source filter, and names the ranking threshold of a
+     * {@code max_results} search would have skipped. It runs on the calling thread even when the
+     * scan is split on the search pool. The names-scored metric counts these scores.
+     */
+    @Override
+    public CandidateScores scoreAll(GramIndex grams, BitSet candidates, NameForm query, int minimumScore) {
+        if (query.chars().length > BitPattern.MAX_LENGTH)
+            return null;
+        BitPattern pattern = query.pattern();
+        long[] masks = pattern.masks();
+        int lanes = SPECIES.length();
+
+        int[] variants = new int[candidates.cardinality()];
+        int[] scores = new int[variants.length];
+        int[] group = new int[lanes];
+        int[] slots = new int[lanes];
+        long[] states = new long[lanes];
+        int grouped = 0;
+        int bounded = 0;
+        int count = 0;
+        for (int v = candidates.nextSetBit(0); v >= 0; v = candidates.nextSetBit(v + 1)) {
+            variants[count] = v;
+            if (grams.getVariant(v).maxScore(query) >= minimumScore) {
+                group[grouped++] = count;
+                bounded++;
+                if (grouped == lanes) {
+                    score(grams, variants, group, grouped, query, pattern, masks, slots, states, scores);
+                    grouped = 0;
+                }
+            }
+            count++;
+        }
+        if (grouped > 0)
+            score(grams, variants, group, grouped, query, pattern, masks, slots, states, scores);
+        return new CandidateScores(variants, scores, bounded);
+    }
+
+    private static void score(GramIndex grams, int[] variants, int[] group, int grouped, NameForm query,
+                              BitPattern pattern, long[] masks, int[] slots, long[] states, int[] scores) {
+        int longest = 0;
+        for (int k = 0; k < grouped; k++)
+            longest = Math.max(longest, grams.getVariant(variants[group[k]]).chars().length);
+        for (int k = grouped; k < slots.length; k++)
+            slots[k] = pattern.empty();
+
+        LongVector v = LongVector.broadcast(SPECIES, -1L);
+        for (int i = 0; i < longest; i++) {
+            for (int k = 0; k < grouped; k++) {
+                char[] name = grams.getVariant(variants[group[k]]).chars();
+                slots[k] = i < name.length ? pattern.index(name[i]) : pattern.empty();
+            }
+            LongVector u = v.and(LongVector.fromArray(SPECIES, masks, 0, slots, 0));
+            v = v.add(u).or(v.sub(u));
+        }
+
+        v.intoArray(states, 0);
+        for (int k = 0; k < grouped; k++) {
+            int length = grams.getVariant(variants[group[k]]).chars().length;
+            scores[group[k]] = LcsScorer.ratio(pattern.count(states[k]), length + query.chars().length);
+        }
+    }
+}